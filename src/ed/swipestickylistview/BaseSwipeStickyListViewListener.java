@@ -20,6 +20,15 @@ public class BaseSwipeStickyListViewListener implements
 	public void onMove(int position, float x) {
 	}
 
+	/**
+	 * Does nothing but call {@link #onMove(int, float)}, so listeners
+	 * overriding only that one keep receiving moves
+	 */
+	@Override
+	public void onMove(int position, float x, float progress) {
+		onMove(position, x);
+	}
+
 	@Override
 	public void onStartOpen(int position, int action, boolean right,
 			View backView) {
@@ -0,0 +1,142 @@
+package ed.swipestickylistview;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.view.View;
+import android.widget.Checkable;
+import android.widget.ListAdapter;
+
+/**
+ * Checked states of the items of the wrapped adapter, kept in adapter
+ * positions. Backed by a bitset, or by the stable ids of the items when
+ * requested and the adapter has them.
+ */
+final class CheckedItemStore {
+
+	private final boolean useStableIds;
+	private ListAdapter adapter;
+	private boolean keyedByIds;
+	private final PositionBitSet positions = new PositionBitSet();
+	private final LongIntMap ids = new LongIntMap();
+
+	CheckedItemStore(boolean useStableIds) {
+		this.useStableIds = useStableIds;
+	}
+
+	/**
+	 * Binds the store to the wrapped adapter and forgets all checked states
+	 */
+	void setAdapter(ListAdapter adapter) {
+		this.adapter = adapter;
+		keyedByIds = useStableIds && adapter != null && adapter.hasStableIds();
+		clear();
+	}
+
+	boolean isChecked(int position) {
+		if (keyedByIds) {
+			return position >= 0 && position < adapter.getCount()
+					&& ids.containsKey(adapter.getItemId(position));
+		}
+		return positions.get(position);
+	}
+
+	void setChecked(int position, boolean value) {
+		if (keyedByIds) {
+			if (position < 0 || position >= adapter.getCount()) {
+				return;
+			}
+			if (value) {
+				ids.put(adapter.getItemId(position), 1);
+			} else {
+				ids.remove(adapter.getItemId(position));
+			}
+		} else {
+			positions.set(position, value);
+		}
+	}
+
+	/**
+	 * Sets the checked state of every item in {@code [from, to)}
+	 */
+	void setChecked(int from, int to, boolean value) {
+		if (keyedByIds) {
+			to = Math.min(to, adapter.getCount());
+			for (int i = Math.max(from, 0); i < to; i++) {
+				setChecked(i, value);
+			}
+		} else {
+			positions.set(from, to, value);
+		}
+	}
+
+	void setAllChecked(boolean value) {
+		if (!value) {
+			clear();
+		} else if (adapter != null) {
+			setChecked(0, adapter.getCount(), true);
+		}
+	}
+
+	void clear() {
+		positions.clear();
+		ids.clear();
+	}
+
+	int getCheckedCount() {
+		return keyedByIds ? ids.size() : positions.cardinality();
+	}
+
+	/**
+	 * @return the first checked position at or after {@code position} or -1
+	 */
+	int nextChecked(int position) {
+		if (keyedByIds) {
+			if (ids.size() == 0) {
+				return -1;
+			}
+			int count = adapter.getCount();
+			for (int i = Math.max(position, 0); i < count; i++) {
+				if (ids.containsKey(adapter.getItemId(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		return positions.nextSetBit(position);
+	}
+
+	void onItemRangeInserted(int positionStart, int itemCount) {
+		if (!keyedByIds) {
+			positions.insert(positionStart, itemCount);
+		}
+	}
+
+	void onItemRangeRemoved(int positionStart, int itemCount) {
+		if (!keyedByIds) {
+			positions.remove(positionStart, itemCount);
+		}
+	}
+
+	void onItemMoved(int fromPosition, int toPosition) {
+		if (!keyedByIds) {
+			boolean checked = positions.get(fromPosition);
+			positions.remove(fromPosition, 1);
+			positions.insert(toPosition, 1);
+			positions.set(toPosition, checked);
+		}
+	}
+
+	/**
+	 * Shows the checked state of an item on its view
+	 */
+	@SuppressLint("NewApi")
+	void applyCheckedState(View view, int position) {
+		boolean checked = isChecked(position);
+		if (view instanceof Checkable) {
+			((Checkable) view).setChecked(checked);
+		} else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			view.setActivated(checked);
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package ed.swipestickylistview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.View;
+
+/**
+ * Picture of a dismissed row, which the StickyHeadersSwipeToDismissListView
+ * draws where the row was while it slides out, and the gap it leaves, which
+ * the rows below it close. The row itself is free for reuse as soon as the
+ * picture is taken. The gap follows the row which comes after it in the list
+ * when the list scrolls.
+ */
+final class DismissSnapshot {
+
+	final Bitmap bitmap;
+	final int left;
+	/**
+	 * Distance from the top of the gap to the top of the picture, the height
+	 * of the header or divider row removed with the row
+	 */
+	final int rowOffset;
+	/**
+	 * Height of the gap, the row and the header or divider row removed with
+	 * it
+	 */
+	final int gapHeight;
+	/**
+	 * List position of the first row below the gap once the row is removed
+	 */
+	int position;
+	/**
+	 * Top of the gap in the current layout
+	 */
+	int gapTop;
+
+	float translationX;
+	float alpha = 1f;
+	/**
+	 * How much of the gap of the row is still open
+	 */
+	int gap;
+
+	private DismissSnapshot(Bitmap bitmap, int left, int rowOffset,
+			int gapHeight, int position, int gapTop) {
+		this.bitmap = bitmap;
+		this.left = left;
+		this.rowOffset = rowOffset;
+		this.gapHeight = gapHeight;
+		this.position = position;
+		this.gapTop = gapTop;
+		gap = gapHeight;
+	}
+
+	/**
+	 * Takes the picture of a row
+	 *
+	 * @param leadingRow
+	 *            Header or divider row removed with the row, null if it is
+	 *            not visible
+	 * @param position
+	 *            List position of the row
+	 * @param spare
+	 *            Bitmap of an earlier snapshot to draw into if it has the size
+	 *            of the row, may be null
+	 * @return the snapshot, null if the row has no size or there is no
+	 *         memory for the picture
+	 */
+	static DismissSnapshot capture(View row, View leadingRow, int position,
+			Bitmap spare) {
+		int width = row.getWidth();
+		int height = row.getHeight();
+		if (width <= 0 || height <= 0) {
+			return null;
+		}
+		Bitmap bitmap = spare;
+		if (bitmap != null && bitmap.getWidth() == width
+				&& bitmap.getHeight() == height) {
+			bitmap.eraseColor(0);
+		} else {
+			try {
+				bitmap = Bitmap.createBitmap(width, height,
+						Bitmap.Config.ARGB_8888);
+			} catch (OutOfMemoryError e) {
+				return null;
+			}
+		}
+		row.draw(new Canvas(bitmap));
+		int gapTop = row.getTop();
+		int gapHeight = height;
+		if (leadingRow != null) {
+			gapTop = leadingRow.getTop();
+			gapHeight += leadingRow.getHeight();
+		}
+		// the header or divider row of the next item takes the place of the
+		// one of the removed item
+		return new DismissSnapshot(bitmap, row.getLeft(), row.getTop()
+				- gapTop, gapHeight, position - 1, gapTop);
+	}
+
+	void draw(Canvas canvas, Paint paint) {
+		if (alpha <= 0f) {
+			return;
+		}
+		paint.setAlpha((int) (alpha * 255));
+		canvas.drawBitmap(bitmap, left + translationX, gapTop + rowOffset,
+				paint);
+	}
+
+}
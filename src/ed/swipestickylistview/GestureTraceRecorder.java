@@ -0,0 +1,143 @@
+package ed.swipestickylistview;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+/**
+ * Records the touch events a StickyHeadersSwipeToDismissListView dispatches
+ * and its scroll state changes into a compact binary trace, which
+ * {@link GestureTraceReplayer} can feed back into a list.
+ * <p>
+ * Only the first pointer is recorded, in the coordinates of the list, other
+ * pointers going down or up are left out. Every
+ * record starts with its type. Motion records carry the action and the
+ * batched historical positions followed by the current one, scroll records
+ * the new scroll state. Every time is on the uptime clock of the events,
+ * motion records carry the times of their samples and scroll records the
+ * time the state changed. Times are stored as the signed milliseconds since
+ * the previous time in the trace, as zigzag encoded variable length ints,
+ * since the samples of an event may be older than a scroll record before it.
+ *
+ * @see StickyHeadersSwipeToDismissListView#setGestureTraceRecorder(GestureTraceRecorder)
+ */
+public final class GestureTraceRecorder {
+
+	static final int MAGIC = 0x53534c54; // "SSLT"
+	static final int VERSION = 2;
+	static final int RECORD_MOTION = 1;
+	static final int RECORD_SCROLL_STATE = 2;
+
+	private final ByteArrayOutputStream trace = new ByteArrayOutputStream();
+	private boolean recording;
+	private long lastTime = -1;
+
+	public GestureTraceRecorder() {
+		clear();
+	}
+
+	/**
+	 * Starts or resumes recording
+	 */
+	public void start() {
+		recording = true;
+	}
+
+	/**
+	 * Pauses recording, the recorded trace is kept
+	 */
+	public void stop() {
+		recording = false;
+	}
+
+	public boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * Drops the recorded trace
+	 */
+	public void clear() {
+		trace.reset();
+		lastTime = -1;
+		writeInt(MAGIC);
+		trace.write(VERSION);
+	}
+
+	/**
+	 * @return a copy of the recorded trace
+	 */
+	public byte[] toByteArray() {
+		return trace.toByteArray();
+	}
+
+	/**
+	 * Writes the recorded trace to {@code out}
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		trace.writeTo(out);
+	}
+
+	void recordMotionEvent(MotionEvent event) {
+		int action = event.getActionMasked();
+		if (!recording || action == MotionEvent.ACTION_POINTER_DOWN
+				|| action == MotionEvent.ACTION_POINTER_UP) {
+			return;
+		}
+		int historySize = event.getHistorySize();
+		trace.write(RECORD_MOTION);
+		trace.write(action);
+		writeVarInt(historySize);
+		for (int h = 0; h < historySize; h++) {
+			writeTime(event.getHistoricalEventTime(h));
+			writeFloat(event.getHistoricalX(h));
+			writeFloat(event.getHistoricalY(h));
+		}
+		writeTime(event.getEventTime());
+		writeFloat(event.getX());
+		writeFloat(event.getY());
+	}
+
+	void recordScrollState(int scrollState) {
+		if (!recording) {
+			return;
+		}
+		trace.write(RECORD_SCROLL_STATE);
+		// the clock of MotionEvent#getEventTime()
+		writeTime(SystemClock.uptimeMillis());
+		trace.write(scrollState);
+	}
+
+	/**
+	 * Writes the time since the previous written time, negative if it is
+	 * older
+	 */
+	private void writeTime(long time) {
+		int delta = lastTime < 0 ? 0 : (int) (time - lastTime);
+		writeVarInt((delta << 1) ^ (delta >> 31));
+		lastTime = time;
+	}
+
+	private void writeVarInt(int value) {
+		while ((value & ~0x7F) != 0) {
+			trace.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		trace.write(value);
+	}
+
+	private void writeFloat(float value) {
+		writeInt(Float.floatToIntBits(value));
+	}
+
+	private void writeInt(int value) {
+		trace.write(value >>> 24);
+		trace.write(value >>> 16);
+		trace.write(value >>> 8);
+		trace.write(value);
+	}
+
+}
@@ -0,0 +1,264 @@
+package ed.swipestickylistview;
+
+import java.util.Arrays;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+/**
+ * Feeds a trace recorded by {@link GestureTraceRecorder} back into a
+ * StickyHeadersSwipeToDismissListView and measures how long the list takes to
+ * process every event. Events are dispatched one after the other without
+ * waiting, their times are shifted to the time of the replay, so a replay
+ * does the same work every time. As nothing is drawn in between, the
+ * processing times are grouped by 16ms windows of the recorded time, which
+ * show how much work the events of a display frame would have cost, not
+ * how long real frames took. Call it on the thread of the list, for
+ * example from an instrumented or Robolectric test.
+ * <p>
+ * Recorded scroll state changes are replayed through the scroll listener of
+ * the list and timed like the events, unless the replayed events already
+ * brought the list into that state. Only the states are recorded, not the
+ * scroll positions, so a fling goes on only as far as the list moves it
+ * during the replay. A recorder set on the list is paused during the replay,
+ * so it does not record the replay into its own trace.
+ */
+public final class GestureTraceReplayer {
+
+	/**
+	 * Length of the windows of recorded time the events are grouped by, a
+	 * display frame at 60Hz
+	 */
+	private static final long WINDOW_MILLIS = 16;
+
+	/**
+	 * Processing times of a replay
+	 */
+	public static final class Result {
+		private long[] eventNanos = new long[64];
+		private int eventCount;
+		private long[] windowNanos = new long[16];
+		private int windowCount;
+		private long[] scrollStateNanos = new long[16];
+		private int scrollStateChangeCount;
+
+		private Result() {
+		}
+
+		public int getEventCount() {
+			return eventCount;
+		}
+
+		/**
+		 * @return the time dispatchTouchEvent took for an event
+		 */
+		public long getEventNanos(int event) {
+			return eventNanos[event];
+		}
+
+		/**
+		 * @return the number of 16ms windows from the first to the last
+		 *         recorded event
+		 */
+		public int getWindowCount() {
+			return windowCount;
+		}
+
+		/**
+		 * @return the time the events recorded within a 16ms window took
+		 *         together, 0 for a window without events
+		 */
+		public long getWindowNanos(int window) {
+			return windowNanos[window];
+		}
+
+		public long getTotalNanos() {
+			long total = 0;
+			for (int i = 0; i < eventCount; i++) {
+				total += eventNanos[i];
+			}
+			for (int i = 0; i < scrollStateChangeCount; i++) {
+				total += scrollStateNanos[i];
+			}
+			return total;
+		}
+
+		/**
+		 * @return the number of scroll state changes in the trace
+		 */
+		public int getScrollStateChangeCount() {
+			return scrollStateChangeCount;
+		}
+
+		/**
+		 * @return the time the scroll listener took for a scroll state
+		 *         change, 0 if the list was in that state already
+		 */
+		public long getScrollStateChangeNanos(int change) {
+			return scrollStateNanos[change];
+		}
+
+		private void addEvent(long nanos, int window) {
+			if (eventCount == eventNanos.length) {
+				eventNanos = Arrays.copyOf(eventNanos, eventCount * 2);
+			}
+			eventNanos[eventCount++] = nanos;
+			addWindow(nanos, window);
+		}
+
+		private void addScrollStateChange(long nanos, int window) {
+			if (scrollStateChangeCount == scrollStateNanos.length) {
+				scrollStateNanos = Arrays.copyOf(scrollStateNanos,
+						scrollStateChangeCount * 2);
+			}
+			scrollStateNanos[scrollStateChangeCount++] = nanos;
+			addWindow(nanos, window);
+		}
+
+		private void addWindow(long nanos, int window) {
+			if (window >= windowNanos.length) {
+				windowNanos = Arrays.copyOf(windowNanos,
+						Math.max(window + 1, windowNanos.length * 2));
+			}
+			windowNanos[window] += nanos;
+			windowCount = Math.max(windowCount, window + 1);
+		}
+	}
+
+	private final byte[] trace;
+	private int offset;
+	private long time;
+
+	private GestureTraceReplayer(byte[] trace) {
+		this.trace = trace;
+	}
+
+	/**
+	 * Replays a trace into a list
+	 *
+	 * @param list
+	 *            List receiving the events
+	 * @param trace
+	 *            Trace from {@link GestureTraceRecorder#toByteArray()}
+	 * @return the processing times
+	 * @throws IllegalArgumentException
+	 *             if the trace is not a trace of a supported version
+	 */
+	public static Result replay(StickyHeadersSwipeToDismissListView list,
+			byte[] trace) {
+		return new GestureTraceReplayer(trace).replay(list);
+	}
+
+	private Result replay(StickyHeadersSwipeToDismissListView list) {
+		if (trace.length < 5 || readInt() != GestureTraceRecorder.MAGIC
+				|| readByte() != GestureTraceRecorder.VERSION) {
+			throw new IllegalArgumentException("Not a gesture trace");
+		}
+		GestureTraceRecorder recorder = list.getGestureTraceRecorder();
+		boolean recording = recorder != null && recorder.isRecording();
+		if (recording) {
+			recorder.stop();
+		}
+		try {
+			return replayRecords(list);
+		} finally {
+			if (recording) {
+				recorder.start();
+			}
+		}
+	}
+
+	private Result replayRecords(StickyHeadersSwipeToDismissListView list) {
+		Result result = new Result();
+		long timeShift = 0;
+		long firstTime = -1;
+		long downTime = 0;
+		while (offset < trace.length) {
+			int type = readByte();
+			if (type == GestureTraceRecorder.RECORD_SCROLL_STATE) {
+				long recordedTime = readTime();
+				int scrollState = readByte();
+				if (firstTime < 0) {
+					firstTime = recordedTime;
+					timeShift = SystemClock.uptimeMillis() - firstTime;
+				}
+				long start = System.nanoTime();
+				boolean replayed = list.replayScrollState(scrollState);
+				long nanos = replayed ? System.nanoTime() - start : 0;
+				result.addScrollStateChange(nanos,
+						getWindow(recordedTime, firstTime));
+				continue;
+			}
+			if (type != GestureTraceRecorder.RECORD_MOTION) {
+				throw new IllegalArgumentException("Unknown record " + type);
+			}
+			int action = readByte();
+			int samples = readVarInt() + 1;
+			long sampleTime = readTime();
+			if (firstTime < 0) {
+				firstTime = sampleTime;
+				timeShift = SystemClock.uptimeMillis() - firstTime;
+			}
+			long recordedTime = sampleTime;
+			if (action == MotionEvent.ACTION_DOWN) {
+				downTime = sampleTime + timeShift;
+			}
+			MotionEvent event = MotionEvent.obtain(downTime, sampleTime
+					+ timeShift, action, readFloat(), readFloat(), 0);
+			for (int i = 1; i < samples; i++) {
+				recordedTime = readTime();
+				event.addBatch(recordedTime + timeShift, readFloat(),
+						readFloat(), 1f, 1f, 0);
+			}
+			long start = System.nanoTime();
+			list.dispatchTouchEvent(event);
+			long nanos = System.nanoTime() - start;
+			event.recycle();
+			result.addEvent(nanos, getWindow(recordedTime, firstTime));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the window of a recorded time, times older than the first
+	 *         record count to the first window
+	 */
+	private static int getWindow(long recordedTime, long firstTime) {
+		return (int) (Math.max(0, recordedTime - firstTime) / WINDOW_MILLIS);
+	}
+
+	private long readTime() {
+		int zigzag = readVarInt();
+		time += (zigzag >>> 1) ^ -(zigzag & 1);
+		return time;
+	}
+
+	private int readVarInt() {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	private float readFloat() {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	private int readInt() {
+		return (readByte() << 24) | (readByte() << 16) | (readByte() << 8)
+				| readByte();
+	}
+
+	private int readByte() {
+		if (offset >= trace.length) {
+			throw new IllegalArgumentException("Truncated gesture trace");
+		}
+		return trace[offset++] & 0xFF;
+	}
+
+}
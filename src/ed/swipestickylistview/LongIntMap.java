@@ -0,0 +1,136 @@
+package ed.swipestickylistview;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long keys, usually stable item ids, to int
+ * values. Nothing is boxed and the slots can be iterated without allocating
+ * an iterator.
+ */
+final class LongIntMap {
+
+	private static final int MIN_CAPACITY = 8;
+
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+
+	LongIntMap() {
+		allocate(MIN_CAPACITY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean containsKey(long key) {
+		return used[find(key)];
+	}
+
+	int get(long key, int valueIfAbsent) {
+		int slot = find(key);
+		return used[slot] ? values[slot] : valueIfAbsent;
+	}
+
+	void put(long key, int value) {
+		int slot = find(key);
+		if (!used[slot]) {
+			if ((size + 1) * 2 > keys.length) {
+				rehash(keys.length * 2);
+				slot = find(key);
+			}
+			used[slot] = true;
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+	}
+
+	void remove(long key) {
+		int slot = find(key);
+		if (!used[slot]) {
+			return;
+		}
+		used[slot] = false;
+		size--;
+		// move back the entries of the probe sequence behind the hole
+		int mask = keys.length - 1;
+		int hole = slot;
+		for (int i = (slot + 1) & mask; used[i]; i = (i + 1) & mask) {
+			int home = hash(keys[i]) & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				used[hole] = true;
+				used[i] = false;
+				hole = i;
+			}
+		}
+	}
+
+	void clear() {
+		if (keys.length > MIN_CAPACITY * 4) {
+			allocate(MIN_CAPACITY);
+		} else {
+			Arrays.fill(used, false);
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return the first used slot at or after {@code slot} or -1
+	 */
+	int nextSlot(int slot) {
+		for (int i = Math.max(slot, 0); i < used.length; i++) {
+			if (used[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	int valueAt(int slot) {
+		return values[slot];
+	}
+
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (used[slot] && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = find(oldKeys[i]);
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+	}
+
+	private static int hash(long key) {
+		int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,185 @@
+package ed.swipestickylistview;
+
+import java.util.Arrays;
+
+/**
+ * Bitset of adapter positions. Besides the usual single bit and range
+ * operations it can shift its bits when items are inserted into or removed
+ * from the adapter. Bulk operations work on whole words.
+ */
+final class PositionBitSet {
+
+	private static final long[] EMPTY = new long[0];
+
+	private long[] words = EMPTY;
+
+	boolean get(int position) {
+		int index = position >> 6;
+		return position >= 0 && index < words.length
+				&& (words[index] & (1L << position)) != 0;
+	}
+
+	void set(int position, boolean value) {
+		if (position < 0) {
+			return;
+		}
+		int index = position >> 6;
+		if (value) {
+			ensureCapacity(index + 1);
+			words[index] |= 1L << position;
+		} else if (index < words.length) {
+			words[index] &= ~(1L << position);
+		}
+	}
+
+	/**
+	 * Sets or clears all bits in {@code [from, to)}
+	 */
+	void set(int from, int to, boolean value) {
+		from = Math.max(from, 0);
+		if (from >= to) {
+			return;
+		}
+		if (value) {
+			ensureCapacity(((to - 1) >> 6) + 1);
+		} else {
+			to = Math.min(to, words.length << 6);
+			if (from >= to) {
+				return;
+			}
+		}
+		int first = from >> 6;
+		int last = (to - 1) >> 6;
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> -to;
+		if (first == last) {
+			setBits(first, firstMask & lastMask, value);
+			return;
+		}
+		setBits(first, firstMask, value);
+		for (int i = first + 1; i < last; i++) {
+			words[i] = value ? -1L : 0;
+		}
+		setBits(last, lastMask, value);
+	}
+
+	private void setBits(int index, long mask, boolean value) {
+		if (value) {
+			words[index] |= mask;
+		} else {
+			words[index] &= ~mask;
+		}
+	}
+
+	void clear() {
+		Arrays.fill(words, 0);
+	}
+
+	boolean isEmpty() {
+		for (long word : words) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	int cardinality() {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the first set position at or after {@code from} or -1
+	 */
+	int nextSetBit(int from) {
+		from = Math.max(from, 0);
+		int index = from >> 6;
+		if (index >= words.length) {
+			return -1;
+		}
+		long word = words[index] & (-1L << from);
+		while (true) {
+			if (word != 0) {
+				return (index << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++index == words.length) {
+				return -1;
+			}
+			word = words[index];
+		}
+	}
+
+	/**
+	 * Moves the bits at and after {@code position} up by {@code count}, the
+	 * inserted positions are clear
+	 */
+	void insert(int position, int count) {
+		if (count <= 0 || position >= words.length << 6) {
+			return;
+		}
+		shift(position, count, words.length + ((count + 63) >> 6));
+		set(position, position + count, false);
+	}
+
+	/**
+	 * Drops the bits in {@code [position, position + count)} and moves the
+	 * bits after them down
+	 */
+	void remove(int position, int count) {
+		if (count <= 0 || position >= words.length << 6) {
+			return;
+		}
+		shift(position + count, -count, words.length);
+	}
+
+	/**
+	 * Moves every bit at or after {@code from} by {@code delta} while the
+	 * bits before {@code Math.min(from, from + delta)} stay where they are
+	 */
+	private void shift(int from, int delta, int length) {
+		int keep = Math.min(from, from + delta);
+		long[] shifted = new long[length];
+		for (int i = 0; i < length; i++) {
+			int base = i << 6;
+			long keepMask;
+			if (keep >= base + 64) {
+				keepMask = -1L;
+			} else if (keep <= base) {
+				keepMask = 0;
+			} else {
+				keepMask = (1L << (keep - base)) - 1;
+			}
+			shifted[i] = (wordAt(i) & keepMask)
+					| (readBits(base - delta) & ~keepMask);
+		}
+		words = shifted;
+	}
+
+	/**
+	 * @return the 64 bits starting at {@code start}, bits outside of the set
+	 *         read as clear
+	 */
+	private long readBits(int start) {
+		int index = start >> 6;
+		int offset = start & 63;
+		if (offset == 0) {
+			return wordAt(index);
+		}
+		return (wordAt(index) >>> offset) | (wordAt(index + 1) << (64 - offset));
+	}
+
+	private long wordAt(int index) {
+		return index < 0 || index >= words.length ? 0 : words[index];
+	}
+
+	private void ensureCapacity(int length) {
+		if (words.length < length) {
+			words = Arrays.copyOf(words, Math.max(length, words.length * 2));
+		}
+	}
+
+}
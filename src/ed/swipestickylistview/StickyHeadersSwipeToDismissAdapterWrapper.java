@@ -1,17 +1,27 @@
 package ed.swipestickylistview;
 
+import java.util.Arrays;
 import java.util.WeakHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import android.content.Context;
 import android.database.DataSetObserver;
 import android.graphics.drawable.Drawable;
-import android.util.SparseIntArray;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AbsListView;
+import android.widget.AdapterView;
 import android.widget.BaseAdapter;
 import android.widget.ListAdapter;
 
+import ed.swipestickylistview.StickyHeadersSwipeToDismissListView.HeaderIdSnapshot;
+
 /**
  * A {@link ListAdapter} which wraps a
  * {@link StickyHeadersSwipeToDismissAdapter} and automatically handles wrapping
@@ -29,23 +39,62 @@ class StickyHeadersSwipeToDismissAdapterWrapper extends BaseAdapter implements
 	static final int VIEW_TYPE_DIVIDER_OFFSET = 1;
 	static final int VIEW_TYPE_HEADER_OFFSET = 0;
 	private static final int EXTRA_VIEW_TYPE_COUNT = 2;
-	private static final int HEADER_POSITION = -1;
-	private static final int DIVIDER_POSITION = -2;
+	/*
+	 * Every list row is described by one packed int: the kind of the row in
+	 * the upper bits and, for items, the view type of the delegate plus one
+	 * in the lower bits (0 while it is not known yet). The delegate position
+	 * is not stored, it follows from the row index because every item is
+	 * preceded by exactly one header or divider row.
+	 */
+	private static final int ROW_HEADER = 1 << 28;
+	private static final int ROW_DIVIDER = 2 << 28;
+	private static final int ROW_ITEM = 3 << 28;
+	private static final int ROW_KIND_MASK = 3 << 28;
+	private static final int ROW_VIEW_TYPE_MASK = 0xFFFF;
+	private static final int LAZY_MAPPING_WINDOW = 64;
+	private static final int PARALLEL_SCAN_MIN_CHUNK = 16 * 1024;
+	private static final int PARALLEL_SCAN_THREADS = Runtime.getRuntime()
+			.availableProcessors();
+	private static ExecutorService parallelScanPool;
 
 	private final Context context;
 	final StickyHeadersSwipeToDismissAdapter delegate;
 	private Drawable divider;
 	private int dividerHeight;
 	private WeakHashMap<View, Void> headers = new WeakHashMap<View, Void>();
-	private SparseIntArray positionMapping = new SparseIntArray();
+	private int[] rows = new int[0];
+	private boolean delegateAllItemsEnabled;
+	private CheckedItemStore checkedItems;
 	int dividerViewType;
 	int headerViewType;
 	private int headerCount;
-	private int dividerCount;
+	private int mappedItemCount;
+	private int resolvedItemCount;
+	private boolean lazyPositionMapping;
+	private int sectionCursor = -1;
+	private int sectionCursorStart;
+	private Executor positionMappingExecutor;
+	private Handler mainHandler;
+	private int asyncMappingGeneration;
+	private final HeaderIdSnapshot delegateHeaderIds = new HeaderIdSnapshot() {
+		@Override
+		public int getCount() {
+			return delegate.getCount();
+		}
+
+		@Override
+		public long getHeaderId(int position) {
+			return delegate.getHeaderId(position);
+		}
+	};
 	private int cachedCount = -1;
+	private boolean dispatchingRangeChange;
 	private DataSetObserver datasetObserver = new DataSetObserver() {
 		public void onChanged() {
-			cachedCount = -1;
+			// range notifications have already patched the mapping
+			if (!dispatchingRangeChange) {
+				cachedCount = -1;
+			}
 		};
 
 		public void onInvalidated() {
@@ -68,10 +117,45 @@ class StickyHeadersSwipeToDismissAdapterWrapper extends BaseAdapter implements
 		this.dividerHeight = dividerHeight;
 	}
 
+	void setCheckedItems(CheckedItemStore checkedItems) {
+		this.checkedItems = checkedItems;
+	}
+
 	boolean isHeader(View v) {
 		return headers.containsKey(v);
 	}
 
+	/**
+	 * @return true if the list position shows an item of the delegate
+	 */
+	boolean isItem(int position) {
+		return getRow(position) == ROW_ITEM;
+	}
+
+	/**
+	 * @return the adapter position of the first item in the section of
+	 *         {@code position}
+	 */
+	int getSectionStart(int position) {
+		while (position > 0 && getRow(position * 2) != ROW_HEADER) {
+			position--;
+		}
+		return position;
+	}
+
+	/**
+	 * @return the adapter position after the last item in the section of
+	 *         {@code position}
+	 */
+	int getSectionEnd(int position) {
+		int itemCount = getCount() / 2;
+		position++;
+		while (position < itemCount && getRow(position * 2) != ROW_HEADER) {
+			position++;
+		}
+		return Math.min(position, itemCount);
+	}
+
 	@Override
 	public boolean areAllItemsEnabled() {
 		return false;
@@ -79,14 +163,13 @@ class StickyHeadersSwipeToDismissAdapterWrapper extends BaseAdapter implements
 
 	@Override
 	public boolean isEnabled(int position) {
-		int viewType = getItemViewType(position);
-		if (viewType == headerViewType) {
+		int row = getRow(position);
+		if (row == ROW_HEADER) {
 			return true;
-		} else if (viewType == dividerViewType) {
+		} else if (row == ROW_DIVIDER) {
 			return false;
 		}
-		position = translateListViewPosition(position);
-		return delegate.areAllItemsEnabled() || delegate.isEnabled(position);
+		return delegateAllItemsEnabled || delegate.isEnabled(position / 2);
 	}
 
 	@Override
@@ -103,63 +186,523 @@ class StickyHeadersSwipeToDismissAdapterWrapper extends BaseAdapter implements
 	public int getCount() {
 		// cache the count as it is expensive to count the headers
 		if (cachedCount < 0) {
-			positionMapping.clear();
-			countHeadersAndUpdatePositionMapping();
-			cachedCount = delegate.getCount() + headerCount + dividerCount;
+			mappedItemCount = delegate.getCount();
+			delegateAllItemsEnabled = delegate.areAllItemsEnabled();
+			resolvedItemCount = 0;
+			sectionCursor = -1;
+			headerCount = 0;
+			if (!lazyPositionMapping) {
+				countHeadersAndUpdatePositionMapping(mappedItemCount);
+			}
+			// every item gets exactly one header or divider in front of it,
+			// so the count is known without resolving a single header id
+			cachedCount = mappedItemCount * 2;
 		}
 		return cachedCount;
 	}
 
-	private void countHeadersAndUpdatePositionMapping() {
+	/**
+	 * Continues resolving headers and dividers from the first unresolved
+	 * item up to {@code end}
+	 */
+	private void countHeadersAndUpdatePositionMapping(int end) {
+		if (resolvedItemCount >= end) {
+			return;
+		}
+		if (delegate instanceof StickyHeadersSwipeToDismissSectionAdapter) {
+			countSectionsAndUpdatePositionMapping(
+					(StickyHeadersSwipeToDismissSectionAdapter) delegate, end);
+			return;
+		}
+		ensureRowCapacity(end * 2);
+		headerCount += fillRows(delegateHeaderIds, rows, resolvedItemCount,
+				end, isDelegateConcurrent());
+		resolvedItemCount = end;
+	}
+
+	private boolean isDelegateConcurrent() {
+		return delegate instanceof StickyHeadersSwipeToDismissConcurrentAdapter;
+	}
+
+	/**
+	 * Same as {@link #fillRows(HeaderIdSnapshot, int[], int, int)} but if
+	 * {@code concurrent} is true and the range is large enough it is split
+	 * into chunks which are scanned in parallel. Every chunk compares its
+	 * first id with the id in front of it and writes its own rows, so only
+	 * the header counts of the chunks have to be added up.
+	 */
+	private static int fillRows(final HeaderIdSnapshot headerIds,
+			final int[] rows, int from, int end, boolean concurrent) {
+		int chunks = Math.min(PARALLEL_SCAN_THREADS, (end - from)
+				/ PARALLEL_SCAN_MIN_CHUNK);
+		if (!concurrent || chunks < 2) {
+			return fillRows(headerIds, rows, from, end);
+		}
+		int chunkSize = (end - from + chunks - 1) / chunks;
+		final int[] chunkHeaderCounts = new int[chunks];
+		final Throwable[] failure = new Throwable[1];
+		final CountDownLatch done = new CountDownLatch(chunks - 1);
+		ExecutorService pool = getParallelScanPool();
+		for (int c = 1; c < chunks; c++) {
+			final int chunk = c;
+			final int chunkFrom = from + c * chunkSize;
+			final int chunkEnd = Math.min(end, chunkFrom + chunkSize);
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						chunkHeaderCounts[chunk] = fillRows(headerIds, rows,
+								chunkFrom, chunkEnd);
+					} catch (Throwable e) {
+						failure[0] = e;
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+		int headerCount;
+		try {
+			// the calling thread scans the first chunk itself
+			headerCount = fillRows(headerIds, rows, from, from + chunkSize);
+		} finally {
+			// the workers write into rows, they have to be done before it is
+			// used or the exception of the first chunk is thrown
+			boolean interrupted = false;
+			while (true) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (failure[0] instanceof RuntimeException) {
+			throw (RuntimeException) failure[0];
+		}
+		if (failure[0] instanceof Error) {
+			throw (Error) failure[0];
+		}
+		for (int c = 1; c < chunks; c++) {
+			headerCount += chunkHeaderCounts[c];
+		}
+		return headerCount;
+	}
+
+	private static synchronized ExecutorService getParallelScanPool() {
+		if (parallelScanPool == null) {
+			parallelScanPool = Executors.newFixedThreadPool(
+					PARALLEL_SCAN_THREADS - 1, new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"StickyHeadersScan");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return parallelScanPool;
+	}
+
+	/**
+	 * Writes the header or divider row and the item row of every position in
+	 * {@code [from, end)} to {@code rows}
+	 * 
+	 * @return the number of headers written
+	 */
+	private static int fillRows(HeaderIdSnapshot headerIds, int[] rows,
+			int from, int end) {
 		int headerCount = 0;
-		int dividerCount = 0;
-		int itemCount = delegate.getCount();
-		if (itemCount > 0) {
+		int i = from;
+		if (i >= end) {
+			return 0;
+		}
+		long lastHeaderId;
+		if (i == 0) {
 			headerCount++;
-			long lastHeaderId = delegate.getHeaderId(0);
-			positionMapping.put(0, HEADER_POSITION);
-			positionMapping.put(1, 0);
-			for (int i = 1; i < itemCount; i++) {
-				long headerId = delegate.getHeaderId(i);
-				if (lastHeaderId != headerId) {
-					lastHeaderId = headerId;
-					positionMapping.put(i + headerCount + dividerCount,
-							HEADER_POSITION);
+			lastHeaderId = headerIds.getHeaderId(0);
+			rows[0] = ROW_HEADER;
+			rows[1] = ROW_ITEM;
+			i++;
+		} else {
+			lastHeaderId = headerIds.getHeaderId(i - 1);
+		}
+		for (; i < end; i++) {
+			long headerId = headerIds.getHeaderId(i);
+			if (lastHeaderId != headerId) {
+				lastHeaderId = headerId;
+				rows[i * 2] = ROW_HEADER;
+				headerCount++;
+			} else {
+				rows[i * 2] = ROW_DIVIDER;
+			}
+			rows[i * 2 + 1] = ROW_ITEM;
+		}
+		return headerCount;
+	}
+
+	/**
+	 * @return the number of header rows in {@code [from, end)} of the
+	 *         current mapping
+	 */
+	private int countHeaderRows(int from, int end) {
+		int headerCount = 0;
+		for (int i = from; i < end; i++) {
+			if (rows[i * 2] == ROW_HEADER) {
+				headerCount++;
+			}
+		}
+		return headerCount;
+	}
+
+	private void ensureRowCapacity(int capacity) {
+		if (rows.length < capacity) {
+			int grown = Math.min(mappedItemCount * 2, rows.length * 2);
+			rows = Arrays.copyOf(rows, Math.max(capacity, grown));
+		}
+	}
+
+	/**
+	 * @return the packed row descriptor of the given list position, the
+	 *         rows of the delegate are looked up lazily
+	 */
+	private int getRow(int position) {
+		ensurePositionMapped(position);
+		if (position < 0 || position >= resolvedItemCount * 2) {
+			return ROW_ITEM;
+		}
+		return rows[position] & ROW_KIND_MASK;
+	}
+
+	/**
+	 * Computes the position mapping for {@code snapshot} on
+	 * {@code executor}. The current mapping stays in use until the new one
+	 * is ready, then {@code commit} is run on the main thread to swap the
+	 * data of the delegate, the new mapping is installed and the observers
+	 * are notified once. A newer request drops the result of an older one.
+	 * 
+	 * @param snapshot
+	 *            header ids of the data the delegate will show after
+	 *            {@code commit}, read from the executor thread
+	 * @param commit
+	 *            swaps the data of the delegate without notifying. The
+	 *            delegate must keep its old data until then, as the old
+	 *            mapping is used against it meanwhile.
+	 */
+	void notifyDataSetChangedAsync(final HeaderIdSnapshot snapshot,
+			final Runnable commit) {
+		if (commit == null) {
+			throw new IllegalArgumentException(
+					"commit must swap the data of the adapter");
+		}
+		final int generation = ++asyncMappingGeneration;
+		if (positionMappingExecutor == null) {
+			int itemCount = snapshot.getCount();
+			int[] rows = new int[itemCount * 2];
+			int headerCount = fillRows(snapshot, rows, 0, itemCount);
+			publishPositionMapping(generation, rows, itemCount, headerCount,
+					commit);
+			return;
+		}
+		if (mainHandler == null) {
+			mainHandler = new Handler(Looper.getMainLooper());
+		}
+		positionMappingExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final int itemCount = snapshot.getCount();
+				final int[] rows = new int[itemCount * 2];
+				// snapshots are only safe to read from one thread at a time
+				final int headerCount = fillRows(snapshot, rows, 0, itemCount);
+				mainHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						publishPositionMapping(generation, rows, itemCount,
+								headerCount, commit);
+					}
+				});
+			}
+		});
+	}
+
+	private void publishPositionMapping(int generation, int[] rows,
+			int itemCount, int headerCount, Runnable commit) {
+		if (generation != asyncMappingGeneration) {
+			return;
+		}
+		commit.run();
+		if (delegate.getCount() != itemCount) {
+			// the snapshot does not describe the delegate, count again
+			notifyDataSetChanged();
+			return;
+		}
+		this.rows = rows;
+		this.headerCount = headerCount;
+		mappedItemCount = itemCount;
+		resolvedItemCount = itemCount;
+		sectionCursor = -1;
+		cachedCount = itemCount * 2;
+		notifyMappedDataSetChanged();
+	}
+
+	void setPositionMappingExecutor(Executor positionMappingExecutor) {
+		this.positionMappingExecutor = positionMappingExecutor;
+	}
+
+	/**
+	 * Same as {@link #countHeadersAndUpdatePositionMapping(int)} but walks the
+	 * sections of the delegate, so only the first item of every section is
+	 * looked at
+	 */
+	private void countSectionsAndUpdatePositionMapping(
+			StickyHeadersSwipeToDismissSectionAdapter sectionAdapter, int end) {
+		int headerCount = this.headerCount;
+		int i = resolvedItemCount;
+		int sectionCount = sectionAdapter.getSectionCount();
+		int section = sectionCursor;
+		int sectionStart = sectionCursorStart;
+		if (section < 0) {
+			section = 0;
+			sectionStart = 0;
+		}
+		long lastHeaderId = i > 0 ? delegate.getHeaderId(i - 1) : 0;
+		ensureRowCapacity(end * 2);
+		int[] rows = this.rows;
+		while (i < end && section < sectionCount) {
+			int sectionEnd = sectionStart
+					+ sectionAdapter.getSectionSize(section);
+			if (i == sectionStart && i < sectionEnd) {
+				long headerId = sectionAdapter.getSectionHeaderId(section);
+				if (i == 0 || headerId != lastHeaderId) {
+					rows[i * 2] = ROW_HEADER;
 					headerCount++;
 				} else {
-					positionMapping.put(i + headerCount + dividerCount,
-							DIVIDER_POSITION);
-					dividerCount++;
+					rows[i * 2] = ROW_DIVIDER;
 				}
-				positionMapping.put(i + headerCount + dividerCount, i);
+				rows[i * 2 + 1] = ROW_ITEM;
+				lastHeaderId = headerId;
+				i++;
+			}
+			int stop = Math.min(sectionEnd, end);
+			for (; i < stop; i++) {
+				rows[i * 2] = ROW_DIVIDER;
+				rows[i * 2 + 1] = ROW_ITEM;
+			}
+			if (i >= sectionEnd) {
+				section++;
+				sectionStart = sectionEnd;
 			}
 		}
-		this.dividerCount = dividerCount;
+		sectionCursor = section;
+		sectionCursorStart = sectionStart;
 		this.headerCount = headerCount;
+		resolvedItemCount = i;
+	}
+
+	/**
+	 * Makes sure the mapping covers the given list position. In lazy mode
+	 * this resolves a window of items past the furthest position requested
+	 * so far.
+	 */
+	private void ensurePositionMapped(int position) {
+		int count = getCount();
+		if (position >= resolvedItemCount * 2 && position < count) {
+			countHeadersAndUpdatePositionMapping(Math.min(mappedItemCount,
+					position / 2 + LAZY_MAPPING_WINDOW));
+		}
+	}
+
+	/**
+	 * Sets if headers are only resolved up to the furthest position the list
+	 * asked for instead of scanning the whole adapter at once
+	 * 
+	 * @param lazyPositionMapping
+	 *            true to resolve headers on demand
+	 */
+	void setLazyPositionMapping(boolean lazyPositionMapping) {
+		if (this.lazyPositionMapping != lazyPositionMapping) {
+			this.lazyPositionMapping = lazyPositionMapping;
+			cachedCount = -1;
+		}
+	}
+
+	/**
+	 * Patches the position mapping after items were inserted into the
+	 * delegate and notifies the observers. Only the header ids around the
+	 * inserted range are queried.
+	 * 
+	 * @param positionStart
+	 *            adapter position of the first inserted item
+	 * @param itemCount
+	 *            number of inserted items
+	 */
+	void notifyItemRangeInserted(int positionStart, int itemCount) {
+		int oldItemCount = getMappedItemCount();
+		if (oldItemCount < 0 || positionStart < 0
+				|| positionStart > oldItemCount
+				|| oldItemCount + itemCount != delegate.getCount()) {
+			notifyDataSetChanged();
+			return;
+		}
+		// the first item after the inserted range may change its header
+		updatePositionMapping(positionStart, positionStart + itemCount + 1,
+				itemCount);
+	}
+
+	/**
+	 * Patches the position mapping after items were removed from the
+	 * delegate and notifies the observers.
+	 * 
+	 * @param positionStart
+	 *            adapter position of the first removed item
+	 * @param itemCount
+	 *            number of removed items
+	 */
+	void notifyItemRangeRemoved(int positionStart, int itemCount) {
+		int oldItemCount = getMappedItemCount();
+		if (oldItemCount < 0 || positionStart < 0
+				|| positionStart + itemCount > oldItemCount
+				|| oldItemCount - itemCount != delegate.getCount()) {
+			notifyDataSetChanged();
+			return;
+		}
+		// the item that moved into positionStart gets a new predecessor
+		updatePositionMapping(positionStart, positionStart + 1, -itemCount);
+	}
+
+	/**
+	 * Patches the position mapping after the header ids of a range of items
+	 * may have changed and notifies the observers.
+	 * 
+	 * @param positionStart
+	 *            adapter position of the first changed item
+	 * @param itemCount
+	 *            number of changed items
+	 */
+	void notifyItemRangeChanged(int positionStart, int itemCount) {
+		int oldItemCount = getMappedItemCount();
+		if (oldItemCount < 0 || positionStart < 0
+				|| positionStart + itemCount > oldItemCount
+				|| oldItemCount != delegate.getCount()) {
+			notifyDataSetChanged();
+			return;
+		}
+		updatePositionMapping(positionStart, positionStart + itemCount + 1, 0);
+	}
+
+	/**
+	 * Patches the position mapping after an item was moved in the delegate
+	 * and notifies the observers.
+	 * 
+	 * @param fromPosition
+	 *            old adapter position of the item
+	 * @param toPosition
+	 *            new adapter position of the item
+	 */
+	void notifyItemMoved(int fromPosition, int toPosition) {
+		int oldItemCount = getMappedItemCount();
+		if (oldItemCount < 0 || fromPosition < 0 || toPosition < 0
+				|| fromPosition >= oldItemCount || toPosition >= oldItemCount
+				|| oldItemCount != delegate.getCount()) {
+			notifyDataSetChanged();
+			return;
+		}
+		// every item between both positions got a new neighbour
+		updatePositionMapping(Math.min(fromPosition, toPosition),
+				Math.max(fromPosition, toPosition) + 2, 0);
+	}
+
+	/**
+	 * @return the number of delegate items the current mapping was built for
+	 *         or -1 if there is no valid mapping
+	 */
+	private int getMappedItemCount() {
+		if (cachedCount < 0) {
+			return -1;
+		}
+		return mappedItemCount;
+	}
+
+	/**
+	 * Patches the position mapping for the current delegate data. Items
+	 * before {@code from} keep their rows, items in {@code [from, to)} are
+	 * checked again against their predecessor and items from {@code to} on
+	 * take over the rows of the item that was {@code shift} positions before
+	 * them. Items that were not resolved yet stay unresolved.
+	 */
+	private void updatePositionMapping(int from, int to, int shift) {
+		int itemCount = delegate.getCount();
+		int oldResolvedItemCount = this.resolvedItemCount;
+		int resolvedItemCount;
+		if (from >= oldResolvedItemCount) {
+			resolvedItemCount = Math.min(oldResolvedItemCount, itemCount);
+		} else {
+			resolvedItemCount = Math.min(itemCount,
+					Math.max(to, oldResolvedItemCount + shift));
+			// forget the headers of the replaced and removed items
+			headerCount -= countHeaderRows(from,
+					Math.min(to - shift, oldResolvedItemCount));
+		}
+		to = Math.min(to, resolvedItemCount);
+		mappedItemCount = itemCount;
+		if (from < to) {
+			ensureRowCapacity(resolvedItemCount * 2);
+			int tail = resolvedItemCount - to;
+			if (tail > 0) {
+				System.arraycopy(rows, (to - shift) * 2, rows, to * 2,
+						tail * 2);
+			}
+			headerCount += fillRows(delegateHeaderIds, rows, from, to,
+					isDelegateConcurrent());
+		}
+		this.resolvedItemCount = resolvedItemCount;
+		sectionCursor = -1;
+		cachedCount = itemCount * 2;
+		if (!lazyPositionMapping) {
+			// items appended after the old end still need their headers
+			countHeadersAndUpdatePositionMapping(itemCount);
+		}
+		notifyMappedDataSetChanged();
+	}
+
+	/**
+	 * Notifies the observers about a change the mapping already reflects
+	 */
+	private void notifyMappedDataSetChanged() {
+		delegateAllItemsEnabled = delegate.areAllItemsEnabled();
+		dispatchingRangeChange = true;
+		try {
+			notifyDataSetChanged();
+		} finally {
+			dispatchingRangeChange = false;
+		}
 	}
 
 	int getHeaderCount() {
+		countHeadersAndUpdatePositionMapping(getCount() / 2);
 		return headerCount;
 	}
 
 	@Override
 	public Object getItem(int position) {
-		int viewType = getItemViewType(position);
-		if (viewType == headerViewType || viewType == dividerViewType) {
+		if (getRow(position) != ROW_ITEM) {
 			return null;
 		}
-		position = translateListViewPosition(position);
-		return delegate.getItem(position);
+		return delegate.getItem(position / 2);
 	}
 
 	@Override
 	public long getItemId(int position) {
-		if (getItemViewType(position) == headerViewType) {
-			position = translateListViewPosition(position);
-			return delegate.getHeaderId(position);
+		int row = getRow(position);
+		if (row == ROW_HEADER) {
+			return delegate.getHeaderId(position / 2);
 		}
-		position = translateListViewPosition(position);
-		return delegate.getItemId(position);
+		return delegate.getItemId(translateRow(position, row));
 	}
 
 	@Override
@@ -168,34 +711,48 @@ class StickyHeadersSwipeToDismissAdapterWrapper extends BaseAdapter implements
 	}
 
 	int translateAdapterPosition(int position) {
-		return positionMapping.indexOfValue(position);
+		if (position < 0 || position >= delegate.getCount()) {
+			return AdapterView.INVALID_POSITION;
+		}
+		// every item is preceded by exactly one header or divider, so the
+		// reverse mapping needs no lookup at all
+		return position * 2 + 1;
 	}
 
 	int translateListViewPosition(int position) {
-		int viewType = getItemViewType(position);
-		if (viewType == headerViewType) {
-			return positionMapping.get(position + 1);
-		} else if (viewType == dividerViewType) {
-			return positionMapping.get(position - 1);
-		} else {
-			return positionMapping.get(position);
+		return translateRow(position, getRow(position));
+	}
+
+	/**
+	 * Headers belong to the item below them, dividers to the item above
+	 */
+	private static int translateRow(int position, int row) {
+		if (row == ROW_DIVIDER) {
+			return position / 2 - 1;
 		}
+		return position / 2;
 	}
 
 	@Override
 	public int getItemViewType(int position) {
-
-		position = positionMapping.get(position);
-
-		if (position == HEADER_POSITION) {
+		int row = getRow(position);
+		if (row == ROW_HEADER) {
 			return headerViewType;
 		}
-
-		if (position == DIVIDER_POSITION) {
+		if (row == ROW_DIVIDER) {
 			return dividerViewType;
 		}
-
-		return delegate.getItemViewType(position);
+		if (position >= resolvedItemCount * 2) {
+			return delegate.getItemViewType(position / 2);
+		}
+		int viewType = rows[position] & ROW_VIEW_TYPE_MASK;
+		if (viewType == 0) {
+			// the view type of the delegate is cached off by one so an
+			// unknown view type is 0 even for IGNORE_ITEM_VIEW_TYPE
+			viewType = delegate.getItemViewType(position / 2) + 1;
+			rows[position] = ROW_ITEM | (viewType & ROW_VIEW_TYPE_MASK);
+		}
+		return viewType - 1;
 	}
 
 	@Override
@@ -214,21 +771,23 @@ class StickyHeadersSwipeToDismissAdapterWrapper extends BaseAdapter implements
 
 	@Override
 	public View getView(int position, View convertView, ViewGroup parent) {
-		final int viewType = getItemViewType(position);
+		final int row = getRow(position);
 
-		if (viewType == headerViewType) {
+		if (row == ROW_HEADER) {
 			headers.remove(convertView);
-			convertView = delegate.getHeaderView(
-					translateListViewPosition(position), convertView, parent);
+			convertView = delegate.getHeaderView(position / 2, convertView,
+					parent);
 			headers.put(convertView, null);
-		} else if (viewType == dividerViewType) {
+		} else if (row == ROW_DIVIDER) {
 			if (convertView == null) {
 				convertView = makeDivider();
 			}
 			return convertView;
 		} else {
-			convertView = delegate.getView(translateListViewPosition(position),
-					convertView, parent);
+			convertView = delegate.getView(position / 2, convertView, parent);
+			if (checkedItems != null) {
+				checkedItems.applyCheckedState(convertView, position / 2);
+			}
 		}
 
 		return convertView;
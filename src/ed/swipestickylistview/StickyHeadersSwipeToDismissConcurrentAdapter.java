@@ -0,0 +1,12 @@
+package ed.swipestickylistview;
+
+/**
+ * Marker for {@link StickyHeadersSwipeToDismissAdapter}s whose
+ * {@link #getHeaderId(int)} may be called from several threads at the same
+ * time and always returns the same id for the same position while the list
+ * counts the headers. The list then splits the header scan of large data
+ * sets across the available cores.
+ */
+public interface StickyHeadersSwipeToDismissConcurrentAdapter extends
+		StickyHeadersSwipeToDismissAdapter {
+}
@@ -1,15 +1,20 @@
 package ed.swipestickylistview;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.database.DataSetObserver;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewConfigurationCompat;
 import android.util.AttributeSet;
 import android.util.SparseBooleanArray;
@@ -25,6 +30,21 @@ import android.widget.SectionIndexer;
 import android.widget.TextView;
 
 /**
+ * <b>Positions.</b> The listeners of the list, like
+ * {@link AdapterView.OnItemClickListener}, receive positions of the wrapped
+ * adapter. {@link #getItemAtPosition(int)},
+ * {@link #getItemIdAtPosition(int)}, {@link #isItemChecked(int)},
+ * {@link #getCheckedItemPosition()} and {@link #getCheckedItemPositions()}
+ * behave like in {@link ListView} and work on positions in the list, which
+ * include the header and divider rows. Earlier versions guessed the kind
+ * of position these methods were called with, code passing positions of
+ * the wrapped adapter to them, for example from onItemClick, has to call
+ * {@link #getAdapterItemAtPosition(int)},
+ * {@link #getAdapterItemIdAtPosition(int)},
+ * {@link #isAdapterItemChecked(int)},
+ * {@link #getCheckedAdapterItemPosition()} and
+ * {@link #getCheckedAdapterItemPositions()} instead.
+ * 
  * @author Emil Sjölander
  * @author Eduard Baev
  */
@@ -38,6 +58,32 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 				boolean currentlySticky);
 	}
 
+	/**
+	 * Header ids of an immutable data snapshot. Read from a background thread
+	 * by {@link StickyHeadersSwipeToDismissListView#notifyDataSetChangedAsync}
+	 */
+	public interface HeaderIdSnapshot {
+		public int getCount();
+
+		public long getHeaderId(int position);
+	}
+
+	/**
+	 * Supplies the swipe modes of many rows at once. When set it replaces
+	 * {@link BaseSwipeStickyListViewListener#onChangeSwipeMode(int)}. The
+	 * modes are asked for the visible rows when a row is touched and are kept
+	 * until rows outside of them are touched or the data changes.
+	 */
+	public interface SwipeModeProvider {
+		/**
+		 * Writes the swipe modes of the rows in
+		 * {@code [position, position + count)} to {@code modes[0]} to
+		 * {@code modes[count - 1]}, SWIPE_MODE_DEFAULT for rows which use the
+		 * swipe mode of the list.
+		 */
+		public void getSwipeModes(int position, int count, int[] modes);
+	}
+
 	private View headerView;
 	/**
 	 * Used when user want change swipe list mode on some rows
@@ -84,6 +130,53 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 */
 	public final static int SWIPE_ACTION_NONE = 3;
 
+	/**
+	 * Swipe directions which can be blocked on single items, ranges or
+	 * sections
+	 */
+	public final static int SWIPE_DIRECTION_LEFT = SwipeBlockRegistry.LEFT;
+	public final static int SWIPE_DIRECTION_RIGHT = SwipeBlockRegistry.RIGHT;
+	public final static int SWIPE_DIRECTION_BOTH = SWIPE_DIRECTION_LEFT
+			| SWIPE_DIRECTION_RIGHT;
+
+	/**
+	 * Dismissed rows collapse by shrinking their height, laying out the list
+	 * on every frame of the collapse
+	 */
+	public final static int DISMISS_COLLAPSE_LAYOUT = 0;
+
+	/**
+	 * Dismissed rows collapse by drawing the rows below them shifted up, the
+	 * list is laid out once when the collapse ends
+	 */
+	public final static int DISMISS_COLLAPSE_OFFSET = 1;
+
+	/**
+	 * Dismissed rows are replaced by a picture of them and dismissed as soon
+	 * as the finger lifts, the picture slides out and the rows below close
+	 * the gap while being drawn shifted. The listener has to remove the item
+	 * from the adapter in onDismiss.
+	 */
+	public final static int DISMISS_COLLAPSE_SNAPSHOT = 2;
+
+	/**
+	 * Callbacks of the swipe listener, combine them to tell
+	 * {@link #setSwipeListViewListener(StickyHeadersSwipeToDismissListViewListener, int)}
+	 * which ones the listener needs
+	 */
+	public final static int CALLBACK_OPENED = 1;
+	public final static int CALLBACK_CLOSED = 1 << 1;
+	public final static int CALLBACK_LIST_CHANGED = 1 << 2;
+	public final static int CALLBACK_MOVE = 1 << 3;
+	public final static int CALLBACK_START_OPEN = 1 << 4;
+	public final static int CALLBACK_START_CLOSE = 1 << 5;
+	public final static int CALLBACK_CLICK_FRONT_VIEW = 1 << 6;
+	public final static int CALLBACK_CLICK_BACK_VIEW = 1 << 7;
+	public final static int CALLBACK_DISMISS = 1 << 8;
+	public final static int CALLBACK_CHANGE_SWIPE_MODE = 1 << 9;
+	public final static int CALLBACK_SWIPE_CHANGED = 1 << 10;
+	public final static int CALLBACK_ALL = (1 << 11) - 1;
+
 	/**
 	 * Indicates no movement
 	 */
@@ -111,13 +204,44 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	/**
 	 * Internal listener for common swipe events
 	 */
-	private BaseSwipeStickyListViewListener swipeListViewListener;
+	private StickyHeadersSwipeToDismissListViewListener swipeListViewListener;
+	private int swipeListViewCallbacks = CALLBACK_ALL;
+
+	/**
+	 * Latest move of the current frame, handed to the listener once per frame
+	 */
+	private int pendingMovePosition;
+	private float pendingMoveX;
+	private float pendingMoveProgress;
+	private boolean movePending;
+	private final Runnable dispatchMove = new Runnable() {
+		@Override
+		public void run() {
+			movePending = false;
+			if (hasCallback(CALLBACK_MOVE)) {
+				swipeListViewListener.onMove(pendingMovePosition, pendingMoveX,
+						pendingMoveProgress);
+			}
+		}
+	};
 
 	/**
 	 * Internal touch listener
 	 */
 	private StickyHeadersSwipeToDismissTouchListener touchListener;
 
+	/**
+	 * Recorder of the dispatched touch events, null when not recording
+	 */
+	private GestureTraceRecorder gestureTraceRecorder;
+
+	/**
+	 * Scroll listener of the swipes and the scroll state it saw last, for
+	 * the replay of traces
+	 */
+	private OnScrollListener swipeScrollListener;
+	private int scrollState = OnScrollListener.SCROLL_STATE_IDLE;
+
 	/**
 	 * If you create a View programmatically you need send back and front
 	 * identifier
@@ -142,6 +266,18 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	private ArrayList<View> footerViews;
 	private StickyHeadersSwipeToDismissListViewWrapper frame;
 	private boolean drawingListUnderStickyHeader = true;
+	private boolean lazyPositionMapping = false;
+	private Executor positionMappingExecutor;
+	private CheckedItemStore checkedItems;
+	private SwipeBlockRegistry swipeBlocks = new SwipeBlockRegistry(false);
+	// rows collapsing with DISMISS_COLLAPSE_OFFSET and how far they are
+	private final ArrayList<View> collapsingRows = new ArrayList<View>();
+	private int[] collapsedHeights = new int[4];
+	// rows dismissed with DISMISS_COLLAPSE_SNAPSHOT
+	private final ArrayList<DismissSnapshot> dismissSnapshots = new ArrayList<DismissSnapshot>();
+	private final Paint dismissSnapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private Bitmap spareSnapshotBitmap;
+	private int adapterChoiceMode = CHOICE_MODE_NONE;
 	private boolean dataChanged = false;
 	private boolean drawSelectorOnTop;
 	private OnItemLongClickListener onItemLongClickListenerDelegate;
@@ -200,6 +336,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 
 		int swipeActionLeft = SWIPE_ACTION_REVEAL;
 		int swipeActionRight = SWIPE_ACTION_REVEAL;
+		int dismissCollapseMode = DISMISS_COLLAPSE_LAYOUT;
 		if (attrs != null) {
 			TypedArray styled = getContext().obtainStyledAttributes(attrs,
 					R.styleable.SwipeListView);
@@ -226,6 +363,9 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 					R.styleable.SwipeListView_swipeFrontView, 0);
 			swipeBackView = styled.getResourceId(
 					R.styleable.SwipeListView_swipeBackView, 0);
+			dismissCollapseMode = styled.getInt(
+					R.styleable.SwipeListView_swipeDismissCollapse,
+					DISMISS_COLLAPSE_LAYOUT);
 		}
 
 		if (swipeFrontView == 0 || swipeBackView == 0) {
@@ -250,9 +390,10 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		touchListener
 				.setSwipeClosesAllItemsWhenListMoves(swipeCloseAllItemsWhenMoveList);
 		touchListener.setSwipeOpenOnLongPress(swipeOpenOnLongPress);
-		setOnTouchListener(touchListener);
+		touchListener.setDismissCollapseMode(dismissCollapseMode);
 
-		setOnScrollListener(touchListener.makeScrollListener());
+		swipeScrollListener = touchListener.makeScrollListener();
+		setOnScrollListener(swipeScrollListener);
 
 	}
 
@@ -309,6 +450,14 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		}
 	}
 
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		// a move posted for the next frame would reach a detached list
+		removeCallbacks(dispatchMove);
+		movePending = false;
+	}
+
 	@Override
 	@Deprecated
 	public void setBackgroundDrawable(Drawable background) {
@@ -347,8 +496,11 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 			return false;
 		} else {
 			if (listener != null) {
-				if (position >= adapter.getCount()) {
-					position -= adapter.getHeaderCount();
+				int rowCount = adapter.getCount();
+				if (position >= headerViewsCount + rowCount) {
+					// every item has one header or divider row, the footers
+					// follow the 2 * N rows without needing the mapping
+					position -= rowCount / 2;
 				} else if (!(position < headerViewsCount)) {
 					position = adapter.translateListViewPosition(position
 							- headerViewsCount)
@@ -371,80 +523,288 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		}
 	}
 
+	/**
+	 * Same as {@link #getItemAtPosition(int)} but takes a position of the
+	 * wrapped adapter instead of a position in the list
+	 * 
+	 * @param position
+	 *            Position in the wrapped adapter
+	 * @return The item of the wrapped adapter
+	 */
+	public Object getAdapterItemAtPosition(int position) {
+		return (adapter == null || position < 0) ? null : adapter.delegate
+				.getItem(position);
+	}
+
+	/**
+	 * Same as {@link #getItemIdAtPosition(int)} but takes a position of the
+	 * wrapped adapter instead of a position in the list
+	 * 
+	 * @param position
+	 *            Position in the wrapped adapter
+	 * @return The item id of the wrapped adapter
+	 */
+	public long getAdapterItemIdAtPosition(int position) {
+		return (adapter == null || position < 0) ? ListView.INVALID_ROW_ID
+				: adapter.delegate.getItemId(position);
+	}
+
 	@Override
-	public Object getItemAtPosition(int position) {
-		if (isCalledFromSuper()) {
-			return super.getItemAtPosition(position);
-		} else {
-			return (adapter == null || position < 0) ? null : adapter.delegate
-					.getItem(position);
+	public void setItemChecked(int position, boolean value) {
+		// only real items are checkable
+		int adapterPosition = position - getHeaderViewsCount();
+		if (adapter != null && adapterPosition >= 0
+				&& adapterPosition < adapter.getCount()) {
+			int viewtype = adapter.getItemViewType(adapterPosition);
+			if (viewtype == adapter.dividerViewType
+					|| viewtype == adapter.headerViewType) {
+				return;
+			}
 		}
+		super.setItemChecked(position, value);
 	}
 
-	@Override
-	public long getItemIdAtPosition(int position) {
-		if (isCalledFromSuper()) {
-			return super.getItemIdAtPosition(position);
+	/**
+	 * Same as {@link #setItemChecked(int, boolean)} but takes a position of
+	 * the wrapped adapter instead of a position in the list
+	 * 
+	 * @param position
+	 *            Position in the wrapped adapter
+	 * @param value
+	 *            The checked state
+	 */
+	public void setAdapterItemChecked(int position, boolean value) {
+		if (checkedItems != null) {
+			if (value && adapterChoiceMode == CHOICE_MODE_SINGLE) {
+				checkedItems.clear();
+			}
+			checkedItems.setChecked(position, value);
+			refreshCheckedViews();
+			return;
+		}
+		int listPosition = toListPosition(position);
+		if (listPosition != ListView.INVALID_POSITION) {
+			super.setItemChecked(listPosition, value);
+		}
+	}
+
+	/**
+	 * Same as {@link #isItemChecked(int)} but takes a position of the wrapped
+	 * adapter instead of a position in the list
+	 * 
+	 * @param position
+	 *            Position in the wrapped adapter
+	 * @return The checked state
+	 */
+	public boolean isAdapterItemChecked(int position) {
+		if (checkedItems != null) {
+			return checkedItems.isChecked(position);
+		}
+		int listPosition = toListPosition(position);
+		return listPosition != ListView.INVALID_POSITION
+				&& isItemChecked(listPosition);
+	}
+
+	/**
+	 * Same as {@link #getCheckedItemPosition()} but returns a position of the
+	 * wrapped adapter
+	 * 
+	 * @return The checked position of the wrapped adapter or
+	 *         {@link ListView#INVALID_POSITION}
+	 */
+	public int getCheckedAdapterItemPosition() {
+		if (checkedItems != null) {
+			return adapterChoiceMode == CHOICE_MODE_SINGLE ? checkedItems
+					.nextChecked(0) : ListView.INVALID_POSITION;
+		}
+		return toAdapterPosition(getCheckedItemPosition());
+	}
+
+	/**
+	 * Same as {@link #getCheckedItemPositions()} but the keys are positions
+	 * of the wrapped adapter
+	 * 
+	 * @return The checked states or null if the choice mode is not multiple
+	 */
+	public SparseBooleanArray getCheckedAdapterItemPositions() {
+		if (checkedItems != null) {
+			SparseBooleanArray checkeditems = new SparseBooleanArray();
+			for (int i = checkedItems.nextChecked(0); i >= 0; i = checkedItems
+					.nextChecked(i + 1)) {
+				checkeditems.append(i, true);
+			}
+			return checkeditems;
+		}
+		SparseBooleanArray superCheckeditems = getCheckedItemPositions();
+		if (superCheckeditems == null) {
+			return null;
+		}
+		SparseBooleanArray checkeditems = new SparseBooleanArray(
+				superCheckeditems.size());
+		for (int i = 0; i < superCheckeditems.size(); i++) {
+			int key = toAdapterPosition(superCheckeditems.keyAt(i));
+			if (key != ListView.INVALID_POSITION) {
+				checkeditems.append(key, superCheckeditems.valueAt(i));
+			}
+		}
+		return checkeditems;
+	}
+
+	/**
+	 * Keeps the checked states of the adapter-position methods in a bitset
+	 * of the list instead of the choice mode of {@link ListView}. This makes
+	 * checking ranges, sections or all items and counting them cheap for
+	 * large adapters. Leave the choice mode of the ListView at
+	 * {@link ListView#CHOICE_MODE_NONE} when using it. Checked items are
+	 * shown with {@link android.widget.Checkable} or as activated.
+	 * 
+	 * @param choiceMode
+	 *            {@link ListView#CHOICE_MODE_NONE},
+	 *            {@link ListView#CHOICE_MODE_SINGLE} or
+	 *            {@link ListView#CHOICE_MODE_MULTIPLE}
+	 * @param useStableIds
+	 *            Keeps the states by item id instead of position if the
+	 *            adapter has stable ids, so they survive data changes
+	 */
+	public void setAdapterChoiceMode(int choiceMode, boolean useStableIds) {
+		adapterChoiceMode = choiceMode;
+		if (choiceMode == CHOICE_MODE_NONE) {
+			checkedItems = null;
 		} else {
-			return (adapter == null || position < 0) ? ListView.INVALID_ROW_ID
-					: adapter.delegate.getItemId(position);
+			checkedItems = new CheckedItemStore(useStableIds);
+			checkedItems.setAdapter(getWrappedAdapter());
 		}
+		if (adapter != null) {
+			adapter.setCheckedItems(checkedItems);
+		}
+		refreshCheckedViews();
 	}
 
-	private boolean isCalledFromSuper() {
-		// i feel dirty...
-		// could not think if better way, need to translate positions when not
-		// called from super
-		StackTraceElement callingFrame = Thread.currentThread().getStackTrace()[5];
-		return callingFrame.getClassName().contains(
-				"android.widget.AbsListView");
+	public int getAdapterChoiceMode() {
+		return adapterChoiceMode;
 	}
 
-	@Override
-	public void setItemChecked(int position, boolean value) {
-		if (!isCalledFromSuper()) {
-			position = adapter.translateAdapterPosition(position);
+	/**
+	 * Sets the checked state of a range of items of the wrapped adapter.
+	 * Needs {@link #setAdapterChoiceMode(int, boolean)}.
+	 * 
+	 * @param positionStart
+	 *            Adapter position of the first item
+	 * @param itemCount
+	 *            Number of items
+	 * @param value
+	 *            The checked state
+	 */
+	public void setAdapterItemsChecked(int positionStart, int itemCount,
+			boolean value) {
+		if (checkedItems != null) {
+			checkedItems.setChecked(positionStart, positionStart + itemCount,
+					value);
+			refreshCheckedViews();
 		}
-		// only real items are checkable
-		int viewtype = adapter.getItemViewType(position);
-		if (viewtype != adapter.dividerViewType
-				&& viewtype != adapter.headerViewType) {
-			super.setItemChecked(position, value);
+	}
+
+	/**
+	 * Sets the checked state of every item in the section of an item of the
+	 * wrapped adapter. Needs {@link #setAdapterChoiceMode(int, boolean)}.
+	 * 
+	 * @param position
+	 *            Adapter position of any item in the section
+	 * @param value
+	 *            The checked state
+	 */
+	public void setSectionChecked(int position, boolean value) {
+		if (checkedItems != null && adapter != null) {
+			checkedItems.setChecked(adapter.getSectionStart(position),
+					adapter.getSectionEnd(position), value);
+			refreshCheckedViews();
 		}
 	}
 
-	@Override
-	public boolean isItemChecked(int position) {
-		if (!isCalledFromSuper()) {
-			position = adapter.translateAdapterPosition(position);
+	/**
+	 * Checks or unchecks every item of the wrapped adapter. Needs
+	 * {@link #setAdapterChoiceMode(int, boolean)}.
+	 * 
+	 * @param value
+	 *            The checked state
+	 */
+	public void setAllAdapterItemsChecked(boolean value) {
+		if (checkedItems != null) {
+			checkedItems.setAllChecked(value);
+			refreshCheckedViews();
 		}
-		return super.isItemChecked(position);
 	}
 
-	@Override
-	public int getCheckedItemPosition() {
-		int position = super.getCheckedItemPosition();
-		if (!isCalledFromSuper() && position != ListView.INVALID_POSITION) {
-			position = adapter.translateAdapterPosition(position);
+	/**
+	 * @return The number of checked items of the wrapped adapter
+	 */
+	public int getCheckedAdapterItemCount() {
+		if (checkedItems != null) {
+			return checkedItems.getCheckedCount();
 		}
-		return position;
+		return getCheckedItemCount();
 	}
 
-	@Override
-	public SparseBooleanArray getCheckedItemPositions() {
-		SparseBooleanArray superCheckeditems = super.getCheckedItemPositions();
-		if (!isCalledFromSuper() && superCheckeditems != null) {
-			SparseBooleanArray checkeditems = new SparseBooleanArray(
-					superCheckeditems.size());
-			for (int i = 0; i < superCheckeditems.size(); i++) {
-				int key = adapter.translateListViewPosition(superCheckeditems
-						.keyAt(i));
-				boolean value = superCheckeditems.valueAt(i);
-				checkeditems.put(key, value);
+	/**
+	 * Iterates the checked items without allocating, start with 0 and pass
+	 * the last result plus one until it returns
+	 * {@link ListView#INVALID_POSITION}. Needs
+	 * {@link #setAdapterChoiceMode(int, boolean)}.
+	 * 
+	 * @param position
+	 *            Adapter position to start from
+	 * @return The next checked adapter position
+	 */
+	public int nextCheckedAdapterItemPosition(int position) {
+		if (checkedItems != null) {
+			return checkedItems.nextChecked(position);
+		}
+		return ListView.INVALID_POSITION;
+	}
+
+	/**
+	 * Shows the checked states on the visible rows
+	 */
+	private void refreshCheckedViews() {
+		if (checkedItems == null || adapter == null) {
+			return;
+		}
+		int firstPosition = getFirstVisiblePosition() - getHeaderViewsCount();
+		int count = adapter.getCount();
+		for (int i = 0; i < getChildCount(); i++) {
+			int position = firstPosition + i;
+			if (position >= 0 && position < count && adapter.isItem(position)) {
+				checkedItems.applyCheckedState(getChildAt(i),
+						adapter.translateListViewPosition(position));
 			}
-			return checkeditems;
 		}
-		return superCheckeditems;
+	}
+
+	/**
+	 * @return the list position of an item of the wrapped adapter, including
+	 *         the header views of the list
+	 */
+	private int toListPosition(int adapterPosition) {
+		if (adapter == null) {
+			return ListView.INVALID_POSITION;
+		}
+		int position = adapter.translateAdapterPosition(adapterPosition);
+		if (position == ListView.INVALID_POSITION) {
+			return position;
+		}
+		return position + getHeaderViewsCount();
+	}
+
+	/**
+	 * @return the position in the wrapped adapter of a list position,
+	 *         including the header views of the list
+	 */
+	private int toAdapterPosition(int listPosition) {
+		int position = listPosition - getHeaderViewsCount();
+		if (adapter == null || position < 0 || position >= adapter.getCount()) {
+			return ListView.INVALID_POSITION;
+		}
+		return adapter.translateListViewPosition(position);
 	}
 
 	/**
@@ -500,6 +860,41 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		return areHeadersSticky;
 	}
 
+	/**
+	 * Sets if headers are resolved on demand while the list scrolls instead
+	 * of asking the adapter for every header id before the first layout.
+	 * Useful for very large adapters.
+	 * 
+	 * @param lazyPositionMapping
+	 *            true to resolve headers on demand
+	 */
+	public void setLazyPositionMapping(boolean lazyPositionMapping) {
+		this.lazyPositionMapping = lazyPositionMapping;
+		if (adapter != null) {
+			adapter.setLazyPositionMapping(lazyPositionMapping);
+			requestLayout();
+		}
+	}
+
+	public boolean isLazyPositionMapping() {
+		return lazyPositionMapping;
+	}
+
+	/**
+	 * Sets the executor used by {@link #notifyDataSetChangedAsync} to find
+	 * the headers of a new snapshot. Without one the headers are found on the
+	 * calling thread.
+	 * 
+	 * @param positionMappingExecutor
+	 *            Executor
+	 */
+	public void setPositionMappingExecutor(Executor positionMappingExecutor) {
+		this.positionMappingExecutor = positionMappingExecutor;
+		if (adapter != null) {
+			adapter.setPositionMappingExecutor(positionMappingExecutor);
+		}
+	}
+
 	@Override
 	public void setAdapter(ListAdapter adapter) {
 
@@ -529,8 +924,15 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 			}
 			this.adapter.setDivider(divider);
 			this.adapter.setDividerHeight(dividerHeight);
+			this.adapter.setLazyPositionMapping(lazyPositionMapping);
+			this.adapter.setPositionMappingExecutor(positionMappingExecutor);
+			this.adapter.setCheckedItems(checkedItems);
 			this.adapter.registerDataSetObserver(dataSetChangedObserver);
 		}
+		if (checkedItems != null) {
+			checkedItems.setAdapter(adapter);
+		}
+		swipeBlocks.setAdapter(adapter);
 
 		currentHeaderId = null;
 		super.setAdapter(this.adapter);
@@ -555,6 +957,117 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		return null;
 	}
 
+	/**
+	 * Finds the headers of a new immutable snapshot off the main thread. The
+	 * list keeps showing the current data until they are known, then
+	 * {@code commit} runs on the main thread and the list is notified once.
+	 * The wrapped adapter has to keep showing its current data until
+	 * {@code commit} and must not call notifyDataSetChanged itself.
+	 * 
+	 * @param snapshot
+	 *            Header ids of the new data, must be safe to read from the
+	 *            executor thread
+	 * @param commit
+	 *            Swaps the data of the wrapped adapter
+	 * @throws IllegalArgumentException
+	 *             if commit is null
+	 */
+	public void notifyDataSetChangedAsync(HeaderIdSnapshot snapshot,
+			Runnable commit) {
+		if (adapter != null) {
+			adapter.notifyDataSetChangedAsync(snapshot, commit);
+		} else if (commit == null) {
+			throw new IllegalArgumentException(
+					"commit must swap the data of the adapter");
+		} else {
+			commit.run();
+		}
+	}
+
+	/**
+	 * Notifies the list that items were inserted into the wrapped adapter.
+	 * Use it instead of notifyDataSetChanged to avoid recounting the headers
+	 * of the whole adapter.
+	 *
+	 * @param positionStart
+	 *            Adapter position of the first inserted item
+	 * @param itemCount
+	 *            Number of inserted items
+	 */
+	public void notifyItemRangeInserted(int positionStart, int itemCount) {
+		if (checkedItems != null) {
+			checkedItems.onItemRangeInserted(positionStart, itemCount);
+		}
+		swipeBlocks.onItemRangeInserted(positionStart, itemCount);
+		if (touchListener != null) {
+			touchListener.onRowRangeInserted(
+					getHeaderViewsCount() + positionStart * 2, itemCount * 2);
+		}
+		if (adapter != null) {
+			adapter.notifyItemRangeInserted(positionStart, itemCount);
+		}
+	}
+
+	/**
+	 * Notifies the list that items were removed from the wrapped adapter
+	 *
+	 * @param positionStart
+	 *            Adapter position of the first removed item
+	 * @param itemCount
+	 *            Number of removed items
+	 */
+	public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+		if (checkedItems != null) {
+			checkedItems.onItemRangeRemoved(positionStart, itemCount);
+		}
+		swipeBlocks.onItemRangeRemoved(positionStart, itemCount);
+		if (touchListener != null) {
+			touchListener.onRowRangeRemoved(
+					getHeaderViewsCount() + positionStart * 2, itemCount * 2);
+		}
+		if (adapter != null) {
+			adapter.notifyItemRangeRemoved(positionStart, itemCount);
+		}
+	}
+
+	/**
+	 * Notifies the list that items of the wrapped adapter changed, including
+	 * their header ids
+	 *
+	 * @param positionStart
+	 *            Adapter position of the first changed item
+	 * @param itemCount
+	 *            Number of changed items
+	 */
+	public void notifyItemRangeChanged(int positionStart, int itemCount) {
+		if (adapter != null) {
+			adapter.notifyItemRangeChanged(positionStart, itemCount);
+		}
+	}
+
+	/**
+	 * Notifies the list that an item of the wrapped adapter was moved
+	 *
+	 * @param fromPosition
+	 *            Old adapter position
+	 * @param toPosition
+	 *            New adapter position
+	 */
+	public void notifyItemMoved(int fromPosition, int toPosition) {
+		if (checkedItems != null) {
+			checkedItems.onItemMoved(fromPosition, toPosition);
+		}
+		swipeBlocks.onItemMoved(fromPosition, toPosition);
+		if (touchListener != null) {
+			int headerViewsCount = getHeaderViewsCount();
+			touchListener.onRowRangeMoved(headerViewsCount + fromPosition * 2,
+					headerViewsCount + toPosition * 2, 2);
+		}
+		if (adapter != null) {
+			adapter.notifyItemMoved(fromPosition, toPosition);
+		}
+	}
+
 	@Override
 	protected void dispatchDraw(Canvas canvas) {
 		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.FROYO) {
@@ -570,7 +1083,163 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 			canvas.clipRect(0, Math.max(frame.getHeaderBottomPosition(), 0),
 					canvas.getWidth(), canvas.getHeight());
 		}
+		if (!dismissSnapshots.isEmpty()) {
+			anchorDismissSnapshots();
+		}
 		super.dispatchDraw(canvas);
+		for (int i = 0; i < dismissSnapshots.size(); i++) {
+			dismissSnapshots.get(i).draw(canvas, dismissSnapshotPaint);
+		}
+	}
+
+	/**
+	 * Rows below collapsing rows are drawn shifted up by how far those have
+	 * collapsed, rows below dismiss snapshots shifted down by the gap left
+	 * 
+	 * @see ListView#drawChild(Canvas, View, long)
+	 */
+	@Override
+	protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+		int offset = 0;
+		for (int i = collapsingRows.size() - 1; i >= 0; i--) {
+			View row = collapsingRows.get(i);
+			if (row.getParent() == this && row.getTop() < child.getTop()) {
+				offset += collapsedHeights[i];
+			}
+		}
+		for (int i = dismissSnapshots.size() - 1; i >= 0; i--) {
+			DismissSnapshot snapshot = dismissSnapshots.get(i);
+			if (child.getTop() >= snapshot.gapTop) {
+				// the rows below a removed row are laid out without it
+				offset -= snapshot.gap;
+			}
+		}
+		if (offset == 0) {
+			return super.drawChild(canvas, child, drawingTime);
+		}
+		int saveCount = canvas.save();
+		canvas.translate(0, -offset);
+		boolean more = super.drawChild(canvas, child, drawingTime);
+		canvas.restoreToCount(saveCount);
+		return more;
+	}
+
+	/**
+	 * Sets how far a row collapsing with DISMISS_COLLAPSE_OFFSET has
+	 * collapsed
+	 */
+	void setRowCollapse(View row, int collapsedHeight) {
+		int index = collapsingRows.indexOf(row);
+		if (index < 0) {
+			index = collapsingRows.size();
+			collapsingRows.add(row);
+			if (index == collapsedHeights.length) {
+				int[] heights = new int[index * 2];
+				System.arraycopy(collapsedHeights, 0, heights, 0, index);
+				collapsedHeights = heights;
+			}
+		}
+		collapsedHeights[index] = collapsedHeight;
+		invalidate();
+	}
+
+	/**
+	 * Takes the picture of a row dismissed with DISMISS_COLLAPSE_SNAPSHOT,
+	 * drawn until {@link #removeDismissSnapshot(DismissSnapshot)}
+	 * 
+	 * @param leadingRow
+	 *            Header or divider row removed with the row, null if it is
+	 *            not visible
+	 * @param position
+	 *            List position of the row
+	 * @return the snapshot, null if the picture could not be taken
+	 */
+	DismissSnapshot addDismissSnapshot(View row, View leadingRow, int position) {
+		DismissSnapshot snapshot = DismissSnapshot.capture(row, leadingRow,
+				position, spareSnapshotBitmap);
+		if (snapshot != null) {
+			if (snapshot.bitmap == spareSnapshotBitmap) {
+				spareSnapshotBitmap = null;
+			}
+			dismissSnapshots.add(snapshot);
+			invalidate();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Moves the gaps of the snapshots to the rows which follow them in the
+	 * current layout, so they scroll with the list. A gap scrolled out above
+	 * the list is dropped, the rows below it are laid out without it already.
+	 */
+	private void anchorDismissSnapshots() {
+		int childCount = getChildCount();
+		if (isLayoutRequested() || childCount == 0) {
+			// the children do not match the positions until the layout
+			return;
+		}
+		int first = getFirstVisiblePosition();
+		for (int i = dismissSnapshots.size() - 1; i >= 0; i--) {
+			DismissSnapshot snapshot = dismissSnapshots.get(i);
+			int index = snapshot.position - first;
+			if (index < 0) {
+				removeDismissSnapshot(snapshot);
+			} else if (index < childCount) {
+				snapshot.gapTop = getChildAt(index).getTop();
+			} else {
+				snapshot.gapTop = getChildAt(childCount - 1).getBottom();
+			}
+		}
+	}
+
+	/**
+	 * Moves the gaps of the snapshots up by the items removed before them,
+	 * every item takes two rows
+	 * 
+	 * @param removedPositions
+	 *            Positions just passed to onDismiss
+	 */
+	void shiftDismissSnapshots(int[] removedPositions) {
+		for (int i = dismissSnapshots.size() - 1; i >= 0; i--) {
+			DismissSnapshot snapshot = dismissSnapshots.get(i);
+			int removed = 0;
+			for (int position : removedPositions) {
+				if (position < snapshot.position) {
+					removed++;
+				}
+			}
+			snapshot.position -= 2 * removed;
+		}
+	}
+
+	void removeDismissSnapshot(DismissSnapshot snapshot) {
+		if (dismissSnapshots.remove(snapshot)) {
+			// keep one bitmap for the next dismiss, rows mostly share a size
+			if (spareSnapshotBitmap == null) {
+				spareSnapshotBitmap = snapshot.bitmap;
+			} else {
+				snapshot.bitmap.recycle();
+			}
+			invalidate();
+		}
+	}
+
+	/**
+	 * Ends the collapse of a row
+	 * 
+	 * @return true if the row was collapsing with DISMISS_COLLAPSE_OFFSET
+	 */
+	boolean clearRowCollapse(View row) {
+		int index = collapsingRows.indexOf(row);
+		if (index < 0) {
+			return false;
+		}
+		int last = collapsingRows.size() - 1;
+		collapsingRows.set(index, collapsingRows.get(last));
+		collapsedHeights[index] = collapsedHeights[last];
+		collapsingRows.remove(last);
+		invalidate();
+		return true;
 	}
 
 	@Override
@@ -820,6 +1489,55 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		touchListener.closeAnimate(position);
 	}
 
+	/**
+	 * Dismisses items of the wrapped adapter from code. The visible rows
+	 * slide out and collapse together like swiped rows. onDismiss is called
+	 * on the next frame with the list positions of the items which are not
+	 * visible, and once more at the end of the animation with the positions
+	 * of the visible ones, as after a swipe, so remove the items there.
+	 * 
+	 * @param positions
+	 *            Positions in the wrapped adapter
+	 */
+	public void dismissAdapterItems(int... positions) {
+		int[] listPositions = new int[positions.length];
+		int count = 0;
+		for (int position : positions) {
+			int listPosition = toListPosition(position);
+			if (listPosition != ListView.INVALID_POSITION) {
+				listPositions[count++] = listPosition;
+			}
+		}
+		touchListener.dismissRows(listPositions, count);
+	}
+
+	/**
+	 * Same as {@link #dismissAdapterItems(int...)} but takes the ids of the
+	 * items
+	 * 
+	 * @param ids
+	 *            Ids of items of the wrapped adapter
+	 */
+	public void dismissAdapterItemIds(long... ids) {
+		if (adapter == null || ids.length == 0) {
+			return;
+		}
+		LongIntMap dismissed = new LongIntMap();
+		for (long id : ids) {
+			dismissed.put(id, 1);
+		}
+		ListAdapter wrapped = getWrappedAdapter();
+		int[] positions = new int[ids.length];
+		int count = 0;
+		for (int i = 0, n = wrapped.getCount(); i < n && count < ids.length; i++) {
+			if (dismissed.get(wrapped.getItemId(i), 0) != 0) {
+				positions[count++] = i;
+			}
+		}
+		dismissAdapterItems(count == ids.length ? positions : Arrays.copyOf(
+				positions, count));
+	}
+
 	/**
 	 * Notifies onDismiss
 	 * 
@@ -827,7 +1545,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 *            All dismissed positions
 	 */
 	protected void onDismiss(int[] reverseSortedPositions) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_DISMISS)) {
 			swipeListViewListener.onDismiss(reverseSortedPositions);
 		}
 	}
@@ -844,7 +1562,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 */
 	protected void onStartOpen(int position, int action, boolean right,
 			View backView) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_START_OPEN)) {
 			swipeListViewListener
 					.onStartOpen(position, action, right, backView);
 		}
@@ -861,7 +1579,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 *            to right
 	 */
 	protected void onChangeSwipe(boolean right, View backView) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_SWIPE_CHANGED)) {
 			swipeListViewListener.onSwipeChanged(right, backView);
 		}
 	}
@@ -874,7 +1592,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 * @param right
 	 */
 	protected void onStartClose(int position, boolean right) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_START_CLOSE)) {
 			swipeListViewListener.onStartClose(position, right);
 		}
 	}
@@ -886,7 +1604,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 *            item clicked
 	 */
 	protected void onClickFrontView(int position) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_CLICK_FRONT_VIEW)) {
 			swipeListViewListener.onClickFrontView(position);
 		}
 	}
@@ -898,7 +1616,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 *            back item clicked
 	 */
 	protected void onClickBackView(int position) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_CLICK_BACK_VIEW)) {
 			swipeListViewListener.onClickBackView(position);
 		}
 	}
@@ -912,7 +1630,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 *            If should be opened toward the right
 	 */
 	protected void onOpened(int position, boolean toRight) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_OPENED)) {
 			swipeListViewListener.onOpened(position, toRight);
 		}
 	}
@@ -926,7 +1644,7 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 *            If open from right
 	 */
 	protected void onClosed(int position, boolean fromRight) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_CLOSED)) {
 			swipeListViewListener.onClosed(position, fromRight);
 		}
 	}
@@ -935,27 +1653,47 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 * Notifies onListChanged
 	 */
 	protected void onListChanged() {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_LIST_CHANGED)) {
 			swipeListViewListener.onListChanged();
 		}
 	}
 
 	/**
-	 * Notifies onMove
+	 * Notifies onMove, at most once per frame with the latest move
 	 * 
 	 * @param position
 	 *            Item moving
 	 * @param x
 	 *            Current position
+	 * @param progress
+	 *            How far the item is opened or dismissed, from 0 to 1
 	 */
-	protected void onMove(int position, float x) {
-		if (swipeListViewListener != null) {
-			swipeListViewListener.onMove(position, x);
+	protected void onMove(int position, float x, float progress) {
+		if (!hasCallback(CALLBACK_MOVE)) {
+			return;
+		}
+		pendingMovePosition = position;
+		pendingMoveX = x;
+		pendingMoveProgress = progress;
+		if (!movePending) {
+			movePending = true;
+			ViewCompat.postOnAnimation(this, dispatchMove);
+		}
+	}
+
+	/**
+	 * Hands a move still waiting for its frame to the listener right away,
+	 * so it comes before the callbacks of the release
+	 */
+	void flushMove() {
+		if (movePending) {
+			removeCallbacks(dispatchMove);
+			dispatchMove.run();
 		}
 	}
 
 	protected int changeSwipeMode(int position) {
-		if (swipeListViewListener != null) {
+		if (hasCallback(CALLBACK_CHANGE_SWIPE_MODE)) {
 			return swipeListViewListener.onChangeSwipeMode(position);
 		}
 		return SWIPE_MODE_DEFAULT;
@@ -968,10 +1706,31 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	 *            Listener
 	 */
 	public void setSwipeListViewListener(
-			BaseSwipeStickyListViewListener swipeListViewListener) {
+			StickyHeadersSwipeToDismissListViewListener swipeListViewListener) {
+		setSwipeListViewListener(swipeListViewListener, CALLBACK_ALL);
+	}
+
+	/**
+	 * Sets the Listener and the callbacks it needs, the others are not called
+	 * at all
+	 * 
+	 * @param swipeListViewListener
+	 *            Listener
+	 * @param callbacks
+	 *            CALLBACK_ flags of the needed callbacks
+	 */
+	public void setSwipeListViewListener(
+			StickyHeadersSwipeToDismissListViewListener swipeListViewListener,
+			int callbacks) {
 
 		this.swipeListViewListener = swipeListViewListener;
+		this.swipeListViewCallbacks = callbacks;
+
+	}
 
+	private boolean hasCallback(int callback) {
+		return swipeListViewListener != null
+				&& (swipeListViewCallbacks & callback) != 0;
 	}
 
 	public void resetOpened() {
@@ -992,12 +1751,98 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		}
 	}
 
+	/**
+	 * Blocks the right swipe of a row
+	 * 
+	 * @param position
+	 *            List position of the row
+	 */
 	public void setPositionForBlockedRightMode(int position) {
-		if (touchListener != null) {
-			touchListener.setPositionForBlockedRightMode(position);
+		int adapterPosition = toAdapterPosition(position);
+		if (adapterPosition != ListView.INVALID_POSITION) {
+			swipeBlocks.setBlocked(adapterPosition, adapterPosition + 1,
+					SWIPE_DIRECTION_RIGHT, true);
 		}
 	}
 
+	/**
+	 * Blocks or unblocks swipe directions on items of the wrapped adapter.
+	 * The blocks follow the items through the notifyItem* methods.
+	 * 
+	 * @param positionStart
+	 *            Adapter position of the first item
+	 * @param itemCount
+	 *            Number of items
+	 * @param directions
+	 *            SWIPE_DIRECTION_LEFT, SWIPE_DIRECTION_RIGHT or
+	 *            SWIPE_DIRECTION_BOTH
+	 * @param blocked
+	 *            If the directions are blocked
+	 */
+	public void setSwipeBlocked(int positionStart, int itemCount,
+			int directions, boolean blocked) {
+		swipeBlocks.setBlocked(positionStart, positionStart + itemCount,
+				directions, blocked);
+	}
+
+	/**
+	 * Blocks or unblocks swipe directions on every item in the section of an
+	 * item of the wrapped adapter
+	 * 
+	 * @param position
+	 *            Adapter position of any item in the section
+	 * @param directions
+	 *            SWIPE_DIRECTION_LEFT, SWIPE_DIRECTION_RIGHT or
+	 *            SWIPE_DIRECTION_BOTH
+	 * @param blocked
+	 *            If the directions are blocked
+	 */
+	public void setSectionSwipeBlocked(int position, int directions,
+			boolean blocked) {
+		if (adapter != null) {
+			swipeBlocks.setBlocked(adapter.getSectionStart(position),
+					adapter.getSectionEnd(position), directions, blocked);
+		}
+	}
+
+	/**
+	 * @param position
+	 *            Adapter position of the item
+	 * @return the blocked swipe directions of an item of the wrapped adapter
+	 */
+	public int getSwipeBlocked(int position) {
+		return swipeBlocks.getBlocked(position);
+	}
+
+	/**
+	 * Unblocks every swipe direction on every item
+	 */
+	public void clearSwipeBlocked() {
+		swipeBlocks.clear();
+	}
+
+	/**
+	 * Sets if swipe blocks are kept by the stable ids of the items instead of
+	 * their positions, if the adapter has stable ids. Forgets all blocks.
+	 * 
+	 * @param useStableIds
+	 */
+	public void setSwipeBlockedUseStableIds(boolean useStableIds) {
+		swipeBlocks = new SwipeBlockRegistry(useStableIds);
+		swipeBlocks.setAdapter(getWrappedAdapter());
+	}
+
+	/**
+	 * @return the blocked swipe directions of a row
+	 */
+	int getBlockedSwipeDirections(int listPosition) {
+		int position = toAdapterPosition(listPosition);
+		if (position == ListView.INVALID_POSITION) {
+			return 0;
+		}
+		return swipeBlocks.getBlocked(position);
+	}
+
 	/**
 	 * Resets scrolling
 	 */
@@ -1054,6 +1899,16 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		touchListener.setSwipeMode(swipeMode);
 	}
 
+	/**
+	 * Sets the provider of the swipe modes of the rows, null to ask
+	 * onChangeSwipeMode of the listener for every swipe
+	 * 
+	 * @param swipeModeProvider
+	 */
+	public void setSwipeModeProvider(SwipeModeProvider swipeModeProvider) {
+		touchListener.setSwipeModeProvider(swipeModeProvider);
+	}
+
 	/**
 	 * Return action on left
 	 * 
@@ -1092,6 +1947,119 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 		touchListener.setSwipeActionRight(swipeActionRight);
 	}
 
+	/**
+	 * Sets if swiped and animated rows are put on a hardware layer while
+	 * they move, which makes changing their translation and alpha cheap.
+	 * Enabled by default.
+	 * 
+	 * @param hardwareLayers
+	 * @see #setSwipeHardwareLayerEnabled(View, boolean)
+	 */
+	public void setSwipeHardwareLayers(boolean hardwareLayers) {
+		touchListener.setSwipeHardwareLayers(hardwareLayers);
+	}
+
+	/**
+	 * Opts a row out of the hardware layers of
+	 * {@link #setSwipeHardwareLayers(boolean)}, for example a row showing a
+	 * video or a view which changes on every frame. Call it from getView on
+	 * the row, which covers its front view too, or on the front view only.
+	 * 
+	 * @param view
+	 *            Row or front view
+	 * @param enabled
+	 *            false to never put the view and the views in it on a layer
+	 */
+	public static void setSwipeHardwareLayerEnabled(View view, boolean enabled) {
+		view.setTag(R.id.swipeHardwareLayer, enabled ? null : Boolean.FALSE);
+	}
+
+	/**
+	 * Sets how dismissed rows collapse
+	 * 
+	 * @param dismissCollapseMode
+	 *            DISMISS_COLLAPSE_LAYOUT, DISMISS_COLLAPSE_OFFSET or
+	 *            DISMISS_COLLAPSE_SNAPSHOT
+	 */
+	public void setDismissCollapseMode(int dismissCollapseMode) {
+		touchListener.setDismissCollapseMode(dismissCollapseMode);
+	}
+
+	/**
+	 * Sets if swiped rows are moved once per display frame, at the finger
+	 * position resampled to the frame time, instead of on every touch event.
+	 * Needs API 16, ignored on older versions.
+	 * 
+	 * @param frameAlignedMoves
+	 */
+	public void setFrameAlignedMoves(boolean frameAlignedMoves) {
+		touchListener.setFrameAlignedMoves(frameAlignedMoves);
+	}
+
+	/**
+	 * Sets the scroll velocity below which a flinging list lets rows be
+	 * swiped again, so a touch catching the end of a fling can swipe.
+	 * Defaults to an eighth of the maximum fling velocity.
+	 * 
+	 * @param resumeVelocity
+	 *            pixels per second, 0 to wait until the list is idle
+	 */
+	public void setSwipeResumeVelocity(float resumeVelocity) {
+		touchListener.setSwipeResumeVelocity(resumeVelocity);
+	}
+
+	/**
+	 * Sets how long rows stay unswipeable after the list stopped
+	 * scrolling. Defaults to 0.
+	 * 
+	 * @param resumeDelay
+	 *            milliseconds
+	 */
+	public void setSwipeResumeDelay(long resumeDelay) {
+		touchListener.setSwipeResumeDelay(resumeDelay);
+	}
+
+	/**
+	 * Sets the recorder receiving every touch event the list dispatches and
+	 * its scroll state changes
+	 * 
+	 * @param gestureTraceRecorder
+	 *            Recorder, null to stop recording
+	 * @see GestureTraceReplayer
+	 */
+	public void setGestureTraceRecorder(GestureTraceRecorder gestureTraceRecorder) {
+		this.gestureTraceRecorder = gestureTraceRecorder;
+	}
+
+	GestureTraceRecorder getGestureTraceRecorder() {
+		return gestureTraceRecorder;
+	}
+
+	/**
+	 * Keeps a scroll state change and records it when a recorder is set
+	 */
+	void recordScrollState(int scrollState) {
+		this.scrollState = scrollState;
+		if (gestureTraceRecorder != null) {
+			gestureTraceRecorder.recordScrollState(scrollState);
+		}
+	}
+
+	/**
+	 * Replays a recorded scroll state change through the scroll listener of
+	 * the swipes, unless the list is in that state already, because the
+	 * replayed touch events scrolled it
+	 * 
+	 * @return true if the change was dispatched
+	 */
+	boolean replayScrollState(int scrollState) {
+		if (scrollState == this.scrollState) {
+			return false;
+		}
+		swipeScrollListener.onScrollStateChanged(this, scrollState);
+		return true;
+	}
+
 	/**
 	 * Sets animation time when user drops cell
 	 * 
@@ -1103,39 +2071,56 @@ public class StickyHeadersSwipeToDismissListView extends ListView implements
 	}
 
 	/**
-	 * @see ListView#onInterceptTouchEvent(android.view.MotionEvent)
+	 * Every event goes through the touch listener exactly once, before the
+	 * children and the list see it. Once the listener starts swiping a row the
+	 * gesture belongs to it: the children and the list get a cancel, sent
+	 * with the current event, and no further events of the gesture.
+	 * 
+	 * @see ListView#dispatchTouchEvent(android.view.MotionEvent)
 	 */
 	@Override
-	public boolean onInterceptTouchEvent(MotionEvent ev) {
+	public boolean dispatchTouchEvent(MotionEvent ev) {
+		if (gestureTraceRecorder != null) {
+			gestureTraceRecorder.recordMotionEvent(ev);
+		}
 		int action = MotionEventCompat.getActionMasked(ev);
 		final float x = ev.getX();
 		final float y = ev.getY();
 
-		if (touchState == TOUCH_STATE_SCROLLING_X) {
-			return touchListener.onTouch(this, ev);
-		}
-
 		switch (action) {
-		case MotionEvent.ACTION_MOVE:
-			checkInMoving(x, y);
-			return touchState == TOUCH_STATE_SCROLLING_Y;
 		case MotionEvent.ACTION_DOWN:
-			touchListener.onTouch(this, ev);
 			touchState = TOUCH_STATE_REST;
 			lastMotionX = x;
 			lastMotionY = y;
-			return false;
-		case MotionEvent.ACTION_CANCEL:
-			touchState = TOUCH_STATE_REST;
 			break;
-		case MotionEvent.ACTION_UP:
-			touchListener.onTouch(this, ev);
-			return touchState == TOUCH_STATE_SCROLLING_Y;
+		case MotionEvent.ACTION_MOVE:
+			if (touchState == TOUCH_STATE_REST) {
+				checkInMoving(x, y);
+			}
+			break;
 		default:
 			break;
 		}
 
-		return super.onInterceptTouchEvent(ev);
+		boolean wasSwiping = touchListener.isSwiping();
+		boolean handled = false;
+		if (wasSwiping || touchState != TOUCH_STATE_SCROLLING_Y
+				|| action != MotionEvent.ACTION_MOVE) {
+			// vertical scrolls belong to the list, the listener only needs
+			// to see how they end
+			handled = touchListener.onTouch(this, ev);
+		}
+		if (wasSwiping) {
+			return true;
+		}
+		if (touchListener.isSwiping()) {
+			int originalAction = ev.getAction();
+			ev.setAction(MotionEvent.ACTION_CANCEL);
+			super.dispatchTouchEvent(ev);
+			ev.setAction(originalAction);
+			return true;
+		}
+		return super.dispatchTouchEvent(ev) || handled;
 	}
 
 	/**
@@ -60,6 +60,19 @@ public interface StickyHeadersSwipeToDismissListViewListener {
 	 */
 	void onMove(int position, float x);
 
+	/**
+	 * Called at most once per frame while an item is swiped, with its latest
+	 * offset. Needs {@link StickyHeadersSwipeToDismissListView#CALLBACK_MOVE}.
+	 * 
+	 * @param position
+	 *          list item
+	 * @param x
+	 *          Current position X
+	 * @param progress
+	 *          How far the item is opened or dismissed, from 0 to 1
+	 */
+	void onMove(int position, float x, float progress);
+
 	/**
 	 * Start open item
 	 * 
@@ -111,6 +124,9 @@ public interface StickyHeadersSwipeToDismissListViewListener {
 	/**
 	 * Used when user want to change swipe list mode on some rows. Return SWIPE_MODE_DEFAULT if you
 	 * don't want to change swipe list mode
+	 * <p>
+	 * Called once when a row is touched, not while it is swiped. Not called
+	 * if the list has a SwipeModeProvider.
 	 * 
 	 * @param position
 	 *          position that you want to change
@@ -0,0 +1,37 @@
+package ed.swipestickylistview;
+
+/**
+ * Optional extension of {@link StickyHeadersSwipeToDismissAdapter} for data
+ * sources that already know their sections. The list then finds the headers
+ * by asking for the size of every section instead of calling
+ * {@link #getHeaderId(int)} for every item.
+ */
+public interface StickyHeadersSwipeToDismissSectionAdapter extends
+		StickyHeadersSwipeToDismissAdapter {
+
+	/**
+	 * @return The number of sections in the data set.
+	 */
+	int getSectionCount();
+
+	/**
+	 * Get the number of items in the specified section. The sizes of all
+	 * sections must add up to {@link #getCount()}.
+	 *
+	 * @param section
+	 *            The index of the section.
+	 * @return The number of items in the section, may be 0.
+	 */
+	int getSectionSize(int section);
+
+	/**
+	 * Get the header id of the specified section. It must be the same id
+	 * {@link #getHeaderId(int)} returns for every item of the section.
+	 *
+	 * @param section
+	 *            The index of the section.
+	 * @return The id of the header of the section.
+	 */
+	long getSectionHeaderId(int section);
+
+}
@@ -20,28 +20,37 @@
 
 package ed.swipestickylistview;
 
+import static com.nineoldandroids.view.ViewHelper.getAlpha;
+import static com.nineoldandroids.view.ViewHelper.getTranslationX;
 import static com.nineoldandroids.view.ViewHelper.setAlpha;
 import static com.nineoldandroids.view.ViewHelper.setTranslationX;
 import static com.nineoldandroids.view.ViewPropertyAnimator.animate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
-import android.graphics.Rect;
-import android.os.Handler;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
 import android.widget.AbsListView;
 import android.widget.ListView;
 
 import com.nineoldandroids.animation.Animator;
 import com.nineoldandroids.animation.AnimatorListenerAdapter;
 import com.nineoldandroids.animation.ValueAnimator;
+import com.nineoldandroids.view.ViewPropertyAnimator;
 
 /**
  * Touch listener impl for the StickyHeadersSwipeToDismissListView
@@ -55,14 +64,8 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 
 	private int swipeFrontView = 0;
 	private int swipeBackView = 0;
-	private boolean isOpening;
-	private boolean nowRightSwipe;
-	private Rect rect = new Rect();
 
 	// Cached ViewConfiguration and system-wide constant values
-	private int slop;
-	private int minFlingVelocity;
-	private int maxFlingVelocity;
 	private long configShortAnimationTime;
 	private long animationTime;
 
@@ -73,28 +76,84 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	StickyHeadersSwipeToDismissListView swipeListView;
 	private int viewWidth = 1; // 1 and not 0 to prevent dividing by zero
 
-	private List<PendingDismissData> pendingDismisses = new ArrayList<PendingDismissData>();
-	private int dismissAnimationRefCount = 0;
+	// rows sliding out or collapsing, and rows whose animation ended, which
+	// are committed together on the next frame
+	private final List<PendingDismissData> dismissingRows = new ArrayList<PendingDismissData>();
+	private final List<PendingDismissData> pendingDismisses = new ArrayList<PendingDismissData>();
+	// positions of the rows of both lists
+	private final PositionBitSet dismissPositions = new PositionBitSet();
+	private boolean dismissCommitPosted;
+	private final Runnable dismissCommit = new Runnable() {
+		@Override
+		public void run() {
+			commitDismisses();
+		}
+	};
+	private int dismissCollapseMode = StickyHeadersSwipeToDismissListView.DISMISS_COLLAPSE_LAYOUT;
 
-	private float downX;
-	private boolean swiping;
-	private VelocityTracker velocityTracker;
-	private int downPosition;
+	// Decides what the gesture does, the listener applies it to the views
+	private final SwipeGestureClassifier classifier = new SwipeGestureClassifier();
+	private int downPosition = ListView.INVALID_POSITION;
 	private View parentView;
 	private View frontView;
 	private View backView;
 	private boolean paused;
 
+	// Settle animations, released rows decelerate from the finger speed
+	private static final Interpolator SETTLE_INTERPOLATOR = new AccelerateDecelerateInterpolator();
+	private static final Interpolator FLING_INTERPOLATOR = new DecelerateInterpolator();
+	private static final Interpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
+
+	// Frame aligned moves, the row is moved once per frame to the finger
+	// position resampled at the frame time
+	private static final long RESAMPLE_LATENCY_MILLIS = 5;
+	private static final long RESAMPLE_MAX_PREDICTION_MILLIS = 8;
+	private boolean frameAlignedMoves;
+	private Choreographer.FrameCallback moveFrameCallback;
+	private boolean moveFramePending;
+	private int moveSampleCount;
+	private long moveSampleTime0;
+	private long moveSampleTime1;
+	private float moveSampleX0;
+	private float moveSampleX1;
+
 	private int swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_NONE;
 
 	private int swipeActionLeft = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_REVEAL;
 	private int swipeActionRight = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_REVEAL;
 
-	private List<Boolean> opened;
-	private List<Boolean> abilityRightOpen = new ArrayList<Boolean>();
-	private List<Boolean> openedRight = new ArrayList<Boolean>();
+	private StickyHeadersSwipeToDismissListView.SwipeModeProvider swipeModeProvider;
+	private int[] swipeModes = new int[0];
+	private int swipeModesFirst;
+	private int swipeModesCount;
+
+	private SwipeStateStore swipeStates = new SwipeStateStore();
+
+	// Shared by all rows, they read the row from downPosition
+	private final View.OnClickListener frontClickListener = new View.OnClickListener() {
+		@Override
+		public void onClick(View v) {
+			swipeListView.onClickFrontView(downPosition);
+		}
+	};
+	private final View.OnLongClickListener frontLongClickListener = new View.OnLongClickListener() {
+		@Override
+		public boolean onLongClick(View v) {
+			openAnimate(downPosition);
+			return false;
+		}
+	};
+	private final View.OnClickListener backClickListener = new View.OnClickListener() {
+		@Override
+		public void onClick(View v) {
+			swipeListView.onClickBackView(downPosition);
+		}
+	};
 	boolean listViewMoving;
-	private List<Integer> positionDisable = new LinkedList<Integer>();
+	private final SwipeTouchGate touchGate;
+	private final SwipeLayerTracker layers;
+	// the view the current gesture put on a layer
+	private View gestureLayerView;
 
 	/**
 	 * Constructor
@@ -110,17 +169,19 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 			StickyHeadersSwipeToDismissListView swipeListView,
 			int swipeFrontView, int swipeBackView) {
 		this.swipeFrontView = swipeFrontView;
-		opened = new ArrayList<Boolean>();
 		this.swipeBackView = swipeBackView;
 		ViewConfiguration vc = ViewConfiguration
 				.get(swipeListView.getContext());
-		slop = vc.getScaledTouchSlop();
-		minFlingVelocity = vc.getScaledMinimumFlingVelocity();
-		maxFlingVelocity = vc.getScaledMaximumFlingVelocity();
+		classifier.setSlop(vc.getScaledTouchSlop());
+		classifier.setFlingVelocities(vc.getScaledMinimumFlingVelocity(),
+				vc.getScaledMaximumFlingVelocity());
 		configShortAnimationTime = swipeListView.getContext().getResources()
 				.getInteger(android.R.integer.config_shortAnimTime);
 		animationTime = configShortAnimationTime;
 		this.swipeListView = swipeListView;
+		touchGate = new SwipeTouchGate(swipeListView);
+		touchGate.setResumeVelocity(vc.getScaledMaximumFlingVelocity() / 8f);
+		layers = new SwipeLayerTracker(swipeListView);
 	}
 
 	/**
@@ -142,22 +203,9 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	private void setFrontView(View frontView) {
 		if (frontView != null) {
 			this.frontView = frontView;
-			frontView.setOnClickListener(new View.OnClickListener() {
-				@Override
-				public void onClick(View v) {
-
-					swipeListView.onClickFrontView(downPosition);
-				}
-			});
+			frontView.setOnClickListener(frontClickListener);
 			if (swipeOpenOnLongPress) {
-				frontView
-						.setOnLongClickListener(new View.OnLongClickListener() {
-							@Override
-							public boolean onLongClick(View v) {
-								openAnimate(downPosition);
-								return false;
-							}
-						});
+				frontView.setOnLongClickListener(frontLongClickListener);
 			}
 		}
 	}
@@ -171,13 +219,158 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 
 		this.backView = backView;
 		if (backView != null) {
-			backView.setOnClickListener(new View.OnClickListener() {
+			backView.setOnClickListener(backClickListener);
+		}
+	}
+
+	/**
+	 * Front and back view of a row, kept in a tag of the row
+	 */
+	private static final class RowViews {
+		View frontView;
+		View backView;
+	}
+
+	/**
+	 * Finds a view of a row. The result is kept in a tag of the row, so the
+	 * view hierarchy is only searched again once the view is no longer part
+	 * of the row. The ids of the views may be framework ids, which can not
+	 * be tag keys.
+	 * 
+	 * @param row
+	 *            Child of the list
+	 * @param id
+	 *            Id of the front or back view
+	 * @return the view or null if the row has none
+	 */
+	private View findRowView(View row, int id) {
+		Object tag = row.getTag(R.id.swipeRowViews);
+		RowViews rowViews;
+		if (tag instanceof RowViews) {
+			rowViews = (RowViews) tag;
+		} else {
+			rowViews = new RowViews();
+			row.setTag(R.id.swipeRowViews, rowViews);
+		}
+		boolean front = id == swipeFrontView;
+		View cached = front ? rowViews.frontView : rowViews.backView;
+		if (cached != null && cached.getId() == id && isInRow(cached, row)) {
+			return cached;
+		}
+		View view = row.findViewById(id);
+		if (front) {
+			rowViews.frontView = view;
+		} else {
+			rowViews.backView = view;
+		}
+		return view;
+	}
+
+	private static boolean isInRow(View view, View row) {
+		if (view == row) {
+			return true;
+		}
+		for (ViewParent parent = view.getParent(); parent != null; parent = parent
+				.getParent()) {
+			if (parent == row) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets if swiped rows are moved once per display frame instead of on
+	 * every touch event. Needs API 16, ignored on older versions.
+	 * 
+	 * @param frameAlignedMoves
+	 */
+	public void setFrameAlignedMoves(boolean frameAlignedMoves) {
+		this.frameAlignedMoves = frameAlignedMoves
+				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+		if (!this.frameAlignedMoves) {
+			cancelMoveFrame();
+		}
+	}
+
+	/**
+	 * Keeps the last two raw x positions of the finger, including the
+	 * historical ones batched into the event
+	 */
+	private void addMoveSamples(MotionEvent motionEvent) {
+		float offset = motionEvent.getRawX() - motionEvent.getX();
+		int historySize = motionEvent.getHistorySize();
+		for (int h = 0; h < historySize; h++) {
+			addMoveSample(motionEvent.getHistoricalEventTime(h),
+					motionEvent.getHistoricalX(h) + offset);
+		}
+		addMoveSample(motionEvent.getEventTime(), motionEvent.getRawX());
+	}
+
+	private void addMoveSample(long time, float x) {
+		if (moveSampleCount > 0 && time <= moveSampleTime1) {
+			moveSampleX1 = x;
+			return;
+		}
+		moveSampleTime0 = moveSampleTime1;
+		moveSampleX0 = moveSampleX1;
+		moveSampleTime1 = time;
+		moveSampleX1 = x;
+		moveSampleCount++;
+	}
+
+	/**
+	 * @return the raw x position of the finger at {@code time}, interpolated
+	 *         between the last two samples or predicted a little past them
+	 */
+	private float resampleMoveX(long time) {
+		if (moveSampleCount < 2) {
+			return moveSampleX1;
+		}
+		long interval = moveSampleTime1 - moveSampleTime0;
+		time = Math.min(time, moveSampleTime1
+				+ Math.min(RESAMPLE_MAX_PREDICTION_MILLIS, interval / 2));
+		time = Math.max(time, moveSampleTime0);
+		float alpha = (float) (time - moveSampleTime0) / interval;
+		return moveSampleX0 + (moveSampleX1 - moveSampleX0) * alpha;
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void scheduleMoveFrame() {
+		if (moveFramePending) {
+			return;
+		}
+		if (moveFrameCallback == null) {
+			moveFrameCallback = new Choreographer.FrameCallback() {
 				@Override
-				public void onClick(View v) {
-					swipeListView.onClickBackView(downPosition);
+				public void doFrame(long frameTimeNanos) {
+					moveFramePending = false;
+					if (classifier.isSwiping()) {
+						long time = frameTimeNanos / 1000000
+								- RESAMPLE_LATENCY_MILLIS;
+						move(classifier.getTranslation(resampleMoveX(time)
+								- classifier.getDownX()));
+					}
 				}
-			});
+			};
 		}
+		moveFramePending = true;
+		Choreographer.getInstance().postFrameCallback(moveFrameCallback);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void cancelMoveFrame() {
+		if (moveFramePending) {
+			moveFramePending = false;
+			Choreographer.getInstance().removeFrameCallback(moveFrameCallback);
+		}
+	}
+
+	/**
+	 * @return true while a row follows the finger
+	 */
+	boolean isSwiping() {
+		return classifier.isSwiping();
 	}
 
 	/**
@@ -187,6 +380,48 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 		return listViewMoving;
 	}
 
+	/**
+	 * Sets the scroll velocity below which a flinging list lets rows be
+	 * swiped again
+	 * 
+	 * @param resumeVelocity
+	 *            pixels per second, 0 to wait until the list is idle
+	 */
+	public void setSwipeResumeVelocity(float resumeVelocity) {
+		touchGate.setResumeVelocity(resumeVelocity);
+	}
+
+	/**
+	 * Sets how long rows stay unswipeable after the list stopped scrolling
+	 * 
+	 * @param resumeDelay
+	 *            milliseconds
+	 */
+	public void setSwipeResumeDelay(long resumeDelay) {
+		touchGate.setResumeDelay(resumeDelay);
+	}
+
+	/**
+	 * Sets if swiped and animated rows are put on a hardware layer while
+	 * they move
+	 * 
+	 * @param hardwareLayers
+	 */
+	public void setSwipeHardwareLayers(boolean hardwareLayers) {
+		layers.setEnabled(hardwareLayers);
+	}
+
+	/**
+	 * Sets how dismissed rows collapse
+	 * 
+	 * @param dismissCollapseMode
+	 *            DISMISS_COLLAPSE_LAYOUT, DISMISS_COLLAPSE_OFFSET or
+	 *            DISMISS_COLLAPSE_SNAPSHOT
+	 */
+	public void setDismissCollapseMode(int dismissCollapseMode) {
+		this.dismissCollapseMode = dismissCollapseMode;
+	}
+
 	/**
 	 * Sets animation time when the user drops the cell
 	 * 
@@ -287,38 +522,145 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 		this.swipeActionRight = swipeActionRight;
 	}
 
+	/**
+	 * Sets the provider of the swipe modes of the rows
+	 * 
+	 * @param swipeModeProvider
+	 *            Provider, null to ask the listener
+	 */
+	public void setSwipeModeProvider(
+			StickyHeadersSwipeToDismissListView.SwipeModeProvider swipeModeProvider) {
+		this.swipeModeProvider = swipeModeProvider;
+		swipeModesCount = 0;
+	}
+
+	/**
+	 * Resolves the swipe mode, the blocked directions and the actions of the
+	 * gesture starting on a row, they stay the same until the next touch down
+	 * 
+	 * @param position
+	 *            Position of list
+	 */
+	private void resolveSwipePolicy(int position) {
+		int mode = getSwipeModeOfRow(position);
+		classifier.setPolicy(mode >= 0 ? mode : swipeMode,
+				swipeListView.getBlockedSwipeDirections(position),
+				swipeActionLeft, swipeActionRight);
+	}
+
+	/**
+	 * @return the swipe mode of a row, from the cached modes of the provider
+	 *         if there is one
+	 */
+	private int getSwipeModeOfRow(int position) {
+		if (swipeModeProvider == null) {
+			return swipeListView.changeSwipeMode(position);
+		}
+		if (position < swipeModesFirst
+				|| position >= swipeModesFirst + swipeModesCount) {
+			int first = swipeListView.getFirstVisiblePosition();
+			int count = swipeListView.getChildCount();
+			if (position < first || position >= first + count) {
+				first = position;
+				count = 1;
+			}
+			if (swipeModes.length < count) {
+				swipeModes = new int[count];
+			}
+			swipeModeProvider.getSwipeModes(first, count, swipeModes);
+			swipeModesFirst = first;
+			swipeModesCount = count;
+		}
+		return swipeModes[position - swipeModesFirst];
+	}
+
 	public void resetOpened() {
-		opened = new LinkedList<Boolean>();
+		swipeStates.clear();
 	}
 
 	/**
-	 * Adds new items when adapter is modified
+	 * Updates the swipe states when adapter is modified
 	 */
 	public void resetItems() {
 
+		swipeModesCount = 0;
 		if (swipeListView.getAdapter() != null) {
-			createNewPositionList();
-			int count = swipeListView.getAdapter().getCount();
-			for (int i = opened.size(); i <= count; i++) {
-				opened.add(false);
-				openedRight.add(false);
-				abilityRightOpen.add(true);
-			}
+			swipeStates.setKeyedByIds(swipeListView.getAdapter()
+					.hasStableIds());
 		}
 	}
 
-	private void createNewPositionList() {
-		positionDisable = new LinkedList<Integer>();
+	/**
+	 * Moves the swipe states of the rows at and after {@code position} down
+	 * when rows were inserted. Does nothing if the rows are keyed by stable
+	 * ids.
+	 *
+	 * @param position
+	 *            List position of the first inserted row
+	 * @param count
+	 *            Number of inserted rows
+	 */
+	void onRowRangeInserted(int position, int count) {
+		swipeStates.onRowRangeInserted(position, count);
+		swipeModesCount = 0;
 	}
 
 	/**
-	 * TODO
+	 * Drops the swipe states of removed rows and moves the states after them
+	 * up
+	 *
+	 * @param position
+	 *            List position of the first removed row
+	 * @param count
+	 *            Number of removed rows
 	 */
-	public void setPositionForBlockedRightMode(int pos) {
-		if (positionDisable == null) {
-			createNewPositionList();
+	void onRowRangeRemoved(int position, int count) {
+		swipeStates.onRowRangeRemoved(position, count);
+		swipeModesCount = 0;
+	}
+
+	/**
+	 * Moves the swipe states of moved rows
+	 *
+	 * @param from
+	 *            Old list position of the first moved row
+	 * @param to
+	 *            New list position of the first moved row
+	 * @param count
+	 *            Number of moved rows
+	 */
+	void onRowRangeMoved(int from, int to, int count) {
+		swipeStates.onRowRangeMoved(from, to, count);
+		swipeModesCount = 0;
+	}
+
+	/**
+	 * @return the key of the swipe state of a row, its item id if the adapter
+	 *         has stable ids and its position otherwise
+	 */
+	private long getSwipeStateKey(int position) {
+		if (swipeStates.isKeyedByIds()) {
+			return swipeListView.getItemIdAtPosition(position);
 		}
-		positionDisable.add(pos);
+		return position;
+	}
+
+	private boolean isOpened(int position) {
+		return swipeStates.isOpened(getSwipeStateKey(position));
+	}
+
+	private boolean isOpenedRight(int position) {
+		return swipeStates.isOpenedRight(getSwipeStateKey(position));
+	}
+
+	/**
+	 * Blocks the right swipe of a row
+	 * 
+	 * @see StickyHeadersSwipeToDismissListView#setSwipeBlocked(int, int, int,
+	 *      boolean)
+	 */
+	public void setPositionForBlockedRightMode(int pos) {
+		swipeListView.setPositionForBlockedRightMode(pos);
 	}
 
 	/**
@@ -329,9 +671,9 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 */
 	protected void openAnimate(int position) {
 		openAnimate(
-				swipeListView.getChildAt(
-						position - swipeListView.getFirstVisiblePosition())
-						.findViewById(swipeFrontView), position);
+				findRowView(swipeListView.getChildAt(position
+						- swipeListView.getFirstVisiblePosition()),
+						swipeFrontView), position);
 	}
 
 	/**
@@ -342,9 +684,9 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 */
 	protected void closeAnimate(int position) {
 		closeAnimate(
-				swipeListView.getChildAt(
-						position - swipeListView.getFirstVisiblePosition())
-						.findViewById(swipeFrontView), position);
+				findRowView(swipeListView.getChildAt(position
+						- swipeListView.getFirstVisiblePosition()),
+						swipeFrontView), position);
 	}
 
 	/**
@@ -356,8 +698,8 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 *            Position of list
 	 */
 	private void openAnimate(View view, int position) {
-		if (!opened.get(position)) {
-			generateRevealAnimate(view, true, false, position);
+		if (!isOpened(position)) {
+			generateRevealAnimate(view, true, false, position, 0);
 		}
 	}
 
@@ -370,8 +712,8 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 *            Position of list
 	 */
 	private void closeAnimate(View view, int position) {
-		if (opened.get(position)) {
-			generateRevealAnimate(view, true, false, position);
+		if (isOpened(position)) {
+			generateRevealAnimate(view, true, false, position, 0);
 		}
 	}
 
@@ -388,18 +730,53 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 *            or left
 	 * @param position
 	 *            Position of list
+	 * @param velocity
+	 *            Release velocity in pixels per second
 	 */
 	private void generateAnimate(final View view, final boolean swap,
-			final boolean swapRight, final int position) {
+			final boolean swapRight, final int position, float velocity) {
 		if (swipeCurrentAction == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_REVEAL) {
-			generateRevealAnimate(view, swap, swapRight, position);
+			generateRevealAnimate(view, swap, swapRight, position, velocity);
 
 		}
 		if (swipeCurrentAction == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS) {
-			generateDismissAnimate(parentView, swap, swapRight, position);
+			generateDismissAnimate(parentView, swap, swapRight, position,
+					velocity);
 		}
 	}
 
+	/**
+	 * Starts a settle animation of {@code view} towards {@code moveTo}. A
+	 * full row width takes animationTime, a shorter way proportionally less.
+	 * A release velocity towards {@code moveTo} shortens it further and the
+	 * row decelerates from the speed of the finger.
+	 * 
+	 * @return the animator, to add the other properties and the listener
+	 */
+	private ViewPropertyAnimator animateSettle(View view, float moveTo,
+			float velocity) {
+		float distance = moveTo - getTranslationX(view);
+		return animate(view).translationX(moveTo)
+				.setDuration(getSettleDuration(distance, velocity))
+				.setInterpolator(getSettleInterpolator(distance, velocity));
+	}
+
+	private long getSettleDuration(float distance, float velocity) {
+		long duration = (long) (animationTime * Math.min(1f,
+				Math.abs(distance) / Math.max(1f, viewWidth)));
+		if (distance * velocity > 0) {
+			// a decelerate interpolator starts at twice its average speed
+			duration = Math.min(duration,
+					(long) (2000 * distance / velocity));
+		}
+		return duration;
+	}
+
+	private Interpolator getSettleInterpolator(float distance, float velocity) {
+		return distance * velocity > 0 ? FLING_INTERPOLATOR
+				: SETTLE_INTERPOLATOR;
+	}
+
 	/**
 	 * Create dismiss animation
 	 * 
@@ -413,13 +790,15 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 *            or left
 	 * @param position
 	 *            Position of list
+	 * @param velocity
+	 *            Release velocity in pixels per second
 	 */
-	private void generateDismissAnimate(final View view, final boolean swap,
-			final boolean swapRight, final int position) {
+	private void generateDismissAnimate(View view, boolean swap,
+			boolean swapRight, int position, float velocity) {
 		int moveTo = 0;
-		if (opened.get(position)) {
+		if (isOpened(position)) {
 			if (!swap) {
-				moveTo = openedRight.get(position) ? (int) (viewWidth - rightOffset)
+				moveTo = isOpenedRight(position) ? (int) (viewWidth - rightOffset)
 						: (int) (-viewWidth + leftOffset);
 			}
 		} else {
@@ -428,24 +807,147 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 						: (int) (-viewWidth + leftOffset);
 			}
 		}
-		int alpha = 1;
 		if (swap) {
-			++dismissAnimationRefCount;
-			alpha = 0;
+			if (dismissCollapseMode != StickyHeadersSwipeToDismissListView.DISMISS_COLLAPSE_SNAPSHOT
+					|| !snapshotDismiss(view, moveTo, position, velocity)) {
+				performDismiss(view, position, moveTo, velocity);
+			}
+			return;
 		}
-		animate(view).translationX(moveTo).alpha(alpha)
-				.setDuration(animationTime)
-				.setListener(new AnimatorListenerAdapter() {
+		final View settlingView = view;
+		layers.acquire(settlingView);
+		animateSettle(view, moveTo, velocity).alpha(1).setListener(
+				new AnimatorListenerAdapter() {
 					@Override
 					public void onAnimationEnd(Animator animation) {
-						if (swap) {
-							closeOpenedItems();
-							performDismiss(view, position);
-						}
+						layers.release(settlingView);
 					}
 				});
 	}
 
+	/**
+	 * Replaces a dismissed row by a picture of it and dismisses the item
+	 * right away, then slides the picture out and closes the gap it leaves
+	 * 
+	 * @param view
+	 *            affected view
+	 * @param moveTo
+	 *            where the picture slides to
+	 * @param position
+	 *            Position of list
+	 * @param velocity
+	 *            Release velocity in pixels per second
+	 * @return false if no picture could be taken
+	 */
+	private boolean snapshotDismiss(View view, final float moveTo,
+			int position, float velocity) {
+		// the header or divider row of the item goes with it
+		int index = swipeListView.indexOfChild(view);
+		View leadingRow = index > 0 ? swipeListView.getChildAt(index - 1)
+				: null;
+		final DismissSnapshot snapshot = swipeListView.addDismissSnapshot(
+				view, leadingRow, position);
+		if (snapshot == null) {
+			return false;
+		}
+		final float fromX = getTranslationX(view);
+		final float fromAlpha = getAlpha(view);
+		snapshot.translationX = fromX;
+		snapshot.alpha = fromAlpha;
+		// the row is rebound to another item from now on
+		animate(view).cancel();
+		setTranslationX(view, 0);
+		setAlpha(view, 1f);
+		closeOpenedItems();
+		int[] removedPositions = new int[] { position };
+		swipeListView.onDismiss(removedPositions);
+		shiftDismissPositions(removedPositions);
+
+		final float slideDuration = getSettleDuration(moveTo - fromX,
+				velocity);
+		final Interpolator slideInterpolator = getSettleInterpolator(moveTo
+				- fromX, velocity);
+		final float duration = slideDuration + animationTime;
+		ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f).setDuration(
+				(long) duration);
+		animator.setInterpolator(LINEAR_INTERPOLATOR);
+		animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+			@Override
+			public void onAnimationUpdate(ValueAnimator valueAnimator) {
+				float time = valueAnimator.getAnimatedFraction() * duration;
+				if (time < slideDuration) {
+					float slide = slideInterpolator.getInterpolation(time
+							/ slideDuration);
+					snapshot.translationX = fromX + (moveTo - fromX) * slide;
+					snapshot.alpha = fromAlpha * (1f - slide);
+				} else {
+					snapshot.translationX = moveTo;
+					snapshot.alpha = 0f;
+					float collapse = SETTLE_INTERPOLATOR
+							.getInterpolation(Math.min(1f,
+									(time - slideDuration) / animationTime));
+					snapshot.gap = (int) (snapshot.gapHeight * (1f - collapse));
+				}
+				swipeListView.invalidate();
+			}
+		});
+		animator.addListener(new AnimatorListenerAdapter() {
+			@Override
+			public void onAnimationEnd(Animator animation) {
+				swipeListView.removeDismissSnapshot(snapshot);
+			}
+		});
+		animator.start();
+		return true;
+	}
+
+	/**
+	 * Dismisses rows from code. The visible rows slide out and collapse like
+	 * swiped ones with one animator and are committed when it ends, the
+	 * others are committed on the next frame without an animation.
+	 * 
+	 * @param positions
+	 *            List positions, sorted by this method
+	 * @param count
+	 *            Number of positions used
+	 */
+	void dismissRows(int[] positions, int count) {
+		if (count == 0) {
+			return;
+		}
+		Arrays.sort(positions, 0, count);
+		// the width is only known to the gestures once a row was touched
+		int width = swipeListView.getWidth();
+		float moveTo = swipeActionRight == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS
+				&& swipeActionLeft != StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS ? width
+				: -width;
+		int first = swipeListView.getFirstVisiblePosition();
+		int childCount = swipeListView.getChildCount();
+		PendingDismissData[] visible = new PendingDismissData[Math.min(
+				count, childCount)];
+		int visibleCount = 0;
+		for (int i = 0; i < count; i++) {
+			int position = positions[i];
+			if ((i > 0 && positions[i - 1] == position)
+					|| dismissPositions.get(position)) {
+				continue;
+			}
+			int index = position - first;
+			if (index >= 0 && index < childCount) {
+				visible[visibleCount++] = new PendingDismissData(position,
+						swipeListView.getChildAt(index));
+			} else {
+				dismissPositions.set(position, true);
+				addPendingDismiss(new PendingDismissData(position, null));
+			}
+		}
+		if (visibleCount > 0) {
+			startDismiss(visibleCount == visible.length ? visible : Arrays
+					.copyOf(visible, visibleCount), moveTo, animationTime,
+					SETTLE_INTERPOLATOR);
+		}
+	}
+
 	/**
 	 * Create reveal animation
 	 * 
@@ -459,16 +961,18 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 *            right or left
 	 * @param position
 	 *            list position
+	 * @param velocity
+	 *            Release velocity in pixels per second
 	 */
 	private void generateRevealAnimate(final View view, final boolean swap,
-			final boolean swapRight, final int position) {
+			final boolean swapRight, final int position, float velocity) {
 		if (view == null) {
 			return;
 		}
 		int moveTo = 0;
-		if (opened.get(position)) {
+		if (isOpened(position)) {
 			if (!swap) {
-				moveTo = openedRight.get(position) ? (int) (viewWidth - rightOffset)
+				moveTo = isOpenedRight(position) ? (int) (viewWidth - rightOffset)
 						: (int) (-viewWidth + leftOffset);
 			}
 		} else {
@@ -478,21 +982,35 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 			}
 		}
 
-		animate(view).translationX(moveTo).setDuration(animationTime)
-				.setListener(new AnimatorListenerAdapter() {
+		final long key = getSwipeStateKey(position);
+		// a running animation is replaced without changing the state
+		animate(view).cancel();
+		layers.acquire(view);
+		animateSettle(view, moveTo, velocity).setListener(
+				new AnimatorListenerAdapter() {
+					private boolean canceled;
+
+					@Override
+					public void onAnimationCancel(Animator animation) {
+						canceled = true;
+					}
+
 					@Override
 					public void onAnimationEnd(Animator animation) {
+						layers.release(view);
+						if (canceled) {
+							// caught by a gesture, which settles it again
+							return;
+						}
 						swipeListView.resetScrolling();
 						if (swap) {
-							boolean aux = !opened.get(position);
-							opened.set(position, aux);
+							boolean aux = !swipeStates.isOpened(key);
+							boolean right = swipeStates.isOpenedRight(key);
+							swipeStates.setOpened(key, aux, swapRight);
 							if (aux) {
-								isOpening = false;
 								swipeListView.onOpened(position, swapRight);
-								openedRight.set(position, swapRight);
 							} else {
-								swipeListView.onClosed(position,
-										openedRight.get(position));
+								swipeListView.onClosed(position, right);
 							}
 						}
 					}
@@ -509,32 +1027,25 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 			@Override
 			public void onScrollStateChanged(AbsListView absListView,
 					int scrollState) {
+				swipeListView.recordScrollState(scrollState);
 
 				// swipe
-				setEnabled(scrollState != AbsListView.OnScrollListener.SCROLL_STATE_TOUCH_SCROLL);
-				if (swipeClosesAllItemsWhenListMoves
-						&& scrollState == SCROLL_STATE_TOUCH_SCROLL) {
-					closeOpenedItems();
-				}
+				touchGate.onScrollStateChanged(scrollState);
 				if (scrollState == SCROLL_STATE_TOUCH_SCROLL) {
 					listViewMoving = true;
-					setEnabled(false);
-				}
-				if (scrollState != AbsListView.OnScrollListener.SCROLL_STATE_FLING
-						&& scrollState != SCROLL_STATE_TOUCH_SCROLL) {
+					if (swipeClosesAllItemsWhenListMoves) {
+						closeOpenedItems();
+					}
+				} else if (scrollState == SCROLL_STATE_IDLE) {
 					listViewMoving = false;
 					swipeListView.resetScrolling();
-					new Handler().postDelayed(new Runnable() {
-						public void run() {
-							setEnabled(true);
-						}
-					}, 500);
 				}
 			}
 
 			@Override
 			public void onScroll(AbsListView view, int firstVisibleItem,
 					int visibleItemCount, int totalItemCount) {
+				touchGate.onScroll(firstVisibleItem);
 				swipeListView.scrollChanged(firstVisibleItem);
 			}
 
@@ -542,7 +1053,7 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	}
 
 	/**
-	 * Set enabled
+	 * Set enabled, swipes are also held back while the list scrolls
 	 * 
 	 * @param enabled
 	 */
@@ -550,33 +1061,31 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 		paused = !enabled;
 	}
 
+	/**
+	 * @return true if rows may not be swiped now
+	 */
+	private boolean isPaused() {
+		return paused || !touchGate.isOpen();
+	}
+
 	/**
 	 * Close all opened items
 	 */
 	void closeOpenedItems() {
-		if (opened != null) {
-			int start = swipeListView.getFirstVisiblePosition();
-			int end = swipeListView.getLastVisiblePosition();
+		int start = swipeListView.getFirstVisiblePosition();
+		int end = swipeListView.getLastVisiblePosition();
 
-			for (int i = start; i <= end; i++) {
+		for (int i = start; i <= end; i++) {
 
-				if (i < opened.size() && opened.get(i)) {
-					closeAnimate(swipeListView.getChildAt(i - start)
-							.findViewById(swipeFrontView), i);
-				}
+			if (isOpened(i)) {
+				closeAnimate(
+						findRowView(swipeListView.getChildAt(i - start),
+								swipeFrontView), i);
 			}
 		}
 
 	}
 
-	private boolean checkOnlyLeftModeByPosition() {
-		if (positionDisable != null && positionDisable.contains(downPosition)) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-
 	/**
 	 * @see View.OnTouchListener#onTouch(android.view.View,
 	 *      android.view.MotionEvent)
@@ -590,237 +1099,160 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 
 		switch (motionEvent.getActionMasked()) {
 		case MotionEvent.ACTION_DOWN: {
-			if (paused) {
+			releaseGestureLayer();
+			if (isPaused()) {
 				return false;
 			}
 			swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_NONE;
-
-			int childCount = swipeListView.getChildCount();
-			int[] listViewCoords = new int[2];
-			swipeListView.getLocationOnScreen(listViewCoords);
-			int x = (int) motionEvent.getRawX() - listViewCoords[0];
-			int y = (int) motionEvent.getRawY() - listViewCoords[1];
-
-			View child;
-			for (int i = 0; i < childCount; i++) {
-				child = swipeListView.getChildAt(i);
-				child.getHitRect(rect);
-				if (rect.contains(x, y)
-						&& swipeListView.getAdapter().isEnabled(
-								swipeListView.getFirstVisiblePosition() + i)) {
-					setParentView(child);
-					setFrontView(child.findViewById(swipeFrontView));
-					downX = motionEvent.getRawX();
-					downPosition = swipeListView.getPositionForView(child);
-					if (opened.size() < downPosition) {
-						resetItems();
-					}
-					if (frontView != null && opened.get(downPosition) != null) {
-						frontView.setClickable(!opened.get(downPosition));
-						frontView.setLongClickable(!opened.get(downPosition));
+			classifier.cancel();
+
+			// the event is in the coordinates of the list
+			int position = swipeListView.pointToPosition(
+					(int) motionEvent.getX(), (int) motionEvent.getY());
+			if (position != ListView.INVALID_POSITION
+					&& swipeListView.getAdapter().isEnabled(position)) {
+				View child = swipeListView.getChildAt(position
+						- swipeListView.getFirstVisiblePosition());
+				setParentView(child);
+				setFrontView(findRowView(child, swipeFrontView));
+				downPosition = position;
+				if (swipeBackView > 0) {
+					setBackView(findRowView(child, swipeBackView));
+				}
+				boolean opened = isOpened(downPosition);
+				boolean openedRight = isOpenedRight(downPosition);
+				resolveSwipePolicy(position);
+				classifier.setRow(opened, openedRight, backView != null);
+				if (frontView != null) {
+					frontView.setClickable(!opened);
+					frontView.setLongClickable(!opened);
+					// catch a settling row where it is
+					animate(frontView).cancel();
+					float rowOffset = getTranslationX(frontView);
+					if (opened) {
+						rowOffset -= openedRight ? (int) (viewWidth - rightOffset)
+								: (int) (-viewWidth + leftOffset);
 					}
-					velocityTracker = VelocityTracker.obtain();
-					velocityTracker.addMovement(motionEvent);
-					if (swipeBackView > 0) {
-						setBackView(child.findViewById(swipeBackView));
+					if (Math.abs(rowOffset) >= 1) {
+						classifier.setRowOffset(rowOffset);
 					}
-					break;
 				}
+				classifier.setGeometry(viewWidth, leftOffset, rightOffset);
+				classifier.down(motionEvent.getEventTime(),
+						motionEvent.getRawX(), motionEvent.getRawY(),
+						motionEvent.getPointerId(0));
+				moveSampleCount = 0;
 			}
-			view.onTouchEvent(motionEvent);
 			return true;
 		}
 
-		case MotionEvent.ACTION_UP: {
-			if (velocityTracker == null || !swiping) {
-				break;
+		case MotionEvent.ACTION_CANCEL: {
+			// the gesture was taken away, the row goes back to where it was
+			// and no action is committed
+			boolean tracking = classifier.isTracking();
+			classifier.cancel();
+			if (frameAlignedMoves) {
+				cancelMoveFrame();
 			}
-
-			float deltaX = motionEvent.getRawX() - downX;
-			velocityTracker.addMovement(motionEvent);
-			velocityTracker.computeCurrentVelocity(1000);
-			float velocityX = Math.abs(velocityTracker.getXVelocity());
-			if (!opened.get(downPosition)) {
-				if (swipeMode == StickyHeadersSwipeToDismissListView.SWIPE_MODE_LEFT
-						&& velocityTracker.getXVelocity() > 0) {
-					velocityX = 0;
-				}
-				if (swipeMode == StickyHeadersSwipeToDismissListView.SWIPE_MODE_RIGHT
-						&& velocityTracker.getXVelocity() < 0) {
-					velocityX = 0;
+			swipeListView.flushMove();
+			if (tracking && frontView != null) {
+				if (swipeCurrentAction == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_NONE) {
+					// a caught row which was not swiped yet
+					swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_REVEAL;
 				}
+				generateAnimate(frontView, false, false, downPosition, 0);
 			}
-			float velocityY = Math.abs(velocityTracker.getYVelocity());
-			boolean swap = false;
-			boolean swapRight = false;
-			if (minFlingVelocity <= velocityX && velocityX <= maxFlingVelocity
-					&& velocityY < velocityX) {
-				swapRight = velocityTracker.getXVelocity() > 0;
-				if (opened.get(downPosition) && openedRight.get(downPosition)
-						&& swapRight) {
-					swap = false;
-				} else if (opened.get(downPosition)
-						&& !openedRight.get(downPosition) && !swapRight) {
-					swap = false;
-				} else {
-
-					if (opened.get(downPosition)) {
-
-						swap = true;
-					} else {
-						if (nowRightSwipe == swapRight) {
-							swap = true;
-						} else {
-							swap = false;
-						}
-					}
-
-				}
-			} else if (Math.abs(deltaX) > viewWidth / 2) {
-
-				swap = true;
-				swapRight = deltaX > 0;
+			releaseGestureLayer();
+			frontView = null;
+			backView = null;
+			this.downPosition = ListView.INVALID_POSITION;
+			break;
+		}
 
+		case MotionEvent.ACTION_UP: {
+			int intents = classifier.up(motionEvent.getEventTime(),
+					motionEvent.getRawX(), motionEvent.getRawY(),
+					motionEvent.getPointerId(0));
+			if ((intents & SwipeGestureClassifier.INTENT_SETTLE) == 0) {
+				releaseGestureLayer();
+				break;
+			}
+			if (frameAlignedMoves) {
+				cancelMoveFrame();
 			}
+			swipeListView.flushMove();
+
+			// a caught row may settle without having been swiped
+			swipeCurrentAction = classifier.getAction();
+			boolean swap = classifier.isSwap();
 			if (frontView != null) {
-				generateAnimate(frontView, swap, swapRight, downPosition);
+				generateAnimate(frontView, swap, classifier.isSwapRight(),
+						downPosition, classifier.getVelocityX());
 			}
-			velocityTracker.recycle();
-			velocityTracker = null;
-			downX = 0;
+			// the settle animation holds its own layer
+			releaseGestureLayer();
 			// change clickable front view
 			if (swap && frontView != null) {
-				frontView.setClickable(opened.get(downPosition));
-				frontView.setLongClickable(opened.get(downPosition));
+				frontView.setClickable(isOpened(downPosition));
+				frontView.setLongClickable(isOpened(downPosition));
 			}
 			frontView = null;
 			backView = null;
 			this.downPosition = ListView.INVALID_POSITION;
-			swiping = false;
 
 			break;
 		}
 
 		case MotionEvent.ACTION_MOVE: {
 
-			if (velocityTracker == null || paused) {
+			if (isPaused()) {
 				break;
 			}
 
-			velocityTracker.addMovement(motionEvent);
-			velocityTracker.computeCurrentVelocity(1000);
-			float velocityX = Math.abs(velocityTracker.getXVelocity());
-			float velocityY = Math.abs(velocityTracker.getYVelocity());
-
-			float deltaX = motionEvent.getRawX() - downX;
-			float deltaMode = Math.abs(deltaX);
-
-			if (isOpening && backView != null) {
-
-				boolean onChangeSwipe = (deltaX > 0);
-				if (checkOnlyLeftModeByPosition()) {
-					// TODO
-					// only left mode for some positions
-					if (deltaX > 0) {
-						deltaMode = 0;
-						deltaX = 0;
-					}
-				} else {
-					if (onChangeSwipe != nowRightSwipe) {
-						nowRightSwipe = onChangeSwipe;
-						swipeListView.onChangeSwipe(onChangeSwipe, backView);
-					}
-				}
-
+			// historical samples only feed the velocity, it is only
+			// computed when a decision needs it
+			float offsetX = motionEvent.getRawX() - motionEvent.getX();
+			float offsetY = motionEvent.getRawY() - motionEvent.getY();
+			int historySize = motionEvent.getHistorySize();
+			for (int h = 0; h < historySize; h++) {
+				classifier.addSample(motionEvent.getHistoricalEventTime(h),
+						motionEvent.getHistoricalX(h) + offsetX,
+						motionEvent.getHistoricalY(h) + offsetY);
 			}
-			int swipeMode = this.swipeMode;
-			int changeSwipeMode = swipeListView.changeSwipeMode(downPosition);
-			if (changeSwipeMode >= 0) {
-				swipeMode = changeSwipeMode;
+			if (frameAlignedMoves) {
+				addMoveSamples(motionEvent);
 			}
+			int intents = classifier.move(motionEvent.getEventTime(),
+					motionEvent.getRawX(), motionEvent.getRawY(),
+					motionEvent.getPointerId(0));
 
-			if (swipeMode == StickyHeadersSwipeToDismissListView.SWIPE_MODE_NONE) {
-				deltaMode = 0;
-			} else if (swipeMode != StickyHeadersSwipeToDismissListView.SWIPE_MODE_BOTH) {
-				if (opened.get(downPosition)) {
-					if (swipeMode == StickyHeadersSwipeToDismissListView.SWIPE_MODE_LEFT
-							&& deltaX < 0) {
-						deltaMode = 0;
-					} else if (swipeMode == StickyHeadersSwipeToDismissListView.SWIPE_MODE_RIGHT
-							&& deltaX > 0) {
-						deltaMode = 0;
-					}
-				} else {
-					if (swipeMode == StickyHeadersSwipeToDismissListView.SWIPE_MODE_LEFT
-							&& deltaX > 0) {
-						deltaMode = 0;
-					} else if (swipeMode == StickyHeadersSwipeToDismissListView.SWIPE_MODE_RIGHT
-							&& deltaX < 0) {
-						deltaMode = 0;
-					}
-				}
-			} else {
-				// TODO
-				// only left mode for some positions
-				if (checkOnlyLeftModeByPosition()) {
-
-					if (opened.get(downPosition)) {
-						if (deltaX < 0)
-							deltaMode = 0;
-					} else {
-						if (deltaX > 0)
-							deltaMode = 0;
-					}
-
-				}
+			if ((intents & SwipeGestureClassifier.INTENT_CHANGE_SWIPE) != 0) {
+				swipeListView.onChangeSwipe(classifier.isSwipingRight(),
+						backView);
 			}
-			if (deltaMode > slop
-					&& swipeCurrentAction == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_NONE
-					&& velocityY < velocityX) {
-				swiping = true;
-				boolean swipingRight = (deltaX > 0);
-
-				if (opened.get(downPosition)) {
-					swipeListView.onStartClose(downPosition, swipingRight);
-					swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_REVEAL;
-				} else {
-					if (swipingRight
-							&& swipeActionRight == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS) {
-						swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS;
-					} else if (!swipingRight
-							&& swipeActionLeft == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS) {
-						swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS;
-					} else if (swipingRight
-							&& swipeActionRight == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_CHECK) {
-						swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_CHECK;
-					} else if (!swipingRight
-							&& swipeActionLeft == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_CHECK) {
-						swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_CHECK;
-					} else {
-						swipeCurrentAction = StickyHeadersSwipeToDismissListView.SWIPE_ACTION_REVEAL;
-					}
-
-					nowRightSwipe = swipingRight;
-					if (backView != null) {
-						isOpening = true;
-						swipeListView.onStartOpen(downPosition,
-								swipeCurrentAction, swipingRight, backView);
-					}
+			if ((intents & SwipeGestureClassifier.INTENT_START) != 0) {
+				swipeCurrentAction = classifier.getAction();
+				releaseGestureLayer();
+				gestureLayerView = swipeCurrentAction == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS ? parentView
+						: frontView;
+				layers.acquire(gestureLayerView);
+				if ((intents & SwipeGestureClassifier.INTENT_START_CLOSE) != 0) {
+					swipeListView.onStartClose(downPosition,
+							classifier.isSwipingRight());
+				} else if ((intents & SwipeGestureClassifier.INTENT_START_OPEN) != 0) {
+					swipeListView.onStartOpen(downPosition, swipeCurrentAction,
+							classifier.isSwipingRight(), backView);
 				}
+				// the list cancels its children and its own scrolling
 				swipeListView.requestDisallowInterceptTouchEvent(true);
-				MotionEvent cancelEvent = MotionEvent.obtain(motionEvent);
-				cancelEvent
-						.setAction(MotionEvent.ACTION_CANCEL
-								| (motionEvent.getActionIndex() << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
-				swipeListView.onTouchEvent(cancelEvent);
 			}
 
-			if (swiping) {
-				if (opened.get(downPosition)) {
-					deltaX += openedRight.get(downPosition) ? viewWidth
-							- rightOffset : -viewWidth + leftOffset;
+			if ((intents & SwipeGestureClassifier.INTENT_MOVE) != 0) {
+				if (frameAlignedMoves) {
+					scheduleMoveFrame();
+				} else {
+					move(classifier.getTranslation());
 				}
-				move(deltaX);
 				return true;
 			}
 			break;
@@ -829,6 +1261,13 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 		return false;
 	}
 
+	private void releaseGestureLayer() {
+		if (gestureLayerView != null) {
+			layers.release(gestureLayerView);
+			gestureLayerView = null;
+		}
+	}
+
 	/**
 	 * Moves the view
 	 * 
@@ -836,7 +1275,15 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	 *            delta
 	 */
 	public void move(float deltaX) {
-		swipeListView.onMove(downPosition, deltaX);
+		float distance;
+		if (swipeCurrentAction == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS) {
+			distance = viewWidth;
+		} else {
+			distance = deltaX > 0 ? viewWidth - rightOffset : viewWidth
+					- leftOffset;
+		}
+		swipeListView.onMove(downPosition, deltaX,
+				Math.min(1f, Math.abs(deltaX) / Math.max(1f, distance)));
 		if (swipeCurrentAction == StickyHeadersSwipeToDismissListView.SWIPE_ACTION_DISMISS) {
 			setTranslationX(parentView, deltaX);
 			setAlpha(
@@ -851,15 +1298,41 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	}
 
 	/**
-	 * Class that saves pending dismiss data
+	 * A dismissed row from its slide out until its removal is committed. Its
+	 * position follows the removals committed before it and it is shown on
+	 * whichever row view has that position, as the list rebinds its views
+	 * after a commit.
 	 */
 	class PendingDismissData implements Comparable<PendingDismissData> {
 		public int position;
 		public View view;
-
+		final int originalHeight;
+		final int originalLayoutHeight;
+		// where the row starts sliding from
+		final float fromX;
+		final float fromAlpha;
+		boolean collapsing;
+		boolean resized;
+		boolean layered;
+
+		/**
+		 * @param view
+		 *            View of the row, null if it is not visible
+		 */
 		public PendingDismissData(int position, View view) {
 			this.position = position;
 			this.view = view;
+			if (view != null) {
+				originalHeight = view.getHeight();
+				originalLayoutHeight = view.getLayoutParams().height;
+				fromX = getTranslationX(view);
+				fromAlpha = getAlpha(view);
+			} else {
+				originalHeight = 0;
+				originalLayoutHeight = 0;
+				fromX = 0f;
+				fromAlpha = 1f;
+			}
 		}
 
 		@Override
@@ -870,62 +1343,250 @@ public class StickyHeadersSwipeToDismissTouchListener implements
 	}
 
 	/**
-	 * Perform dismiss action
+	 * Perform dismiss action: slides the row out, collapses it and commits
+	 * its removal on the frame its animation ends, together with the other
+	 * rows ending on that frame
 	 * 
 	 * @param dismissView
 	 *            View
 	 * @param dismissPosition
 	 *            Position of list
+	 * @param moveTo
+	 *            where the row slides to
+	 * @param velocity
+	 *            Release velocity in pixels per second
+	 */
+	private void performDismiss(View dismissView, int dismissPosition,
+			float moveTo, float velocity) {
+		PendingDismissData dismiss = new PendingDismissData(dismissPosition,
+				dismissView);
+		startDismiss(new PendingDismissData[] { dismiss }, moveTo,
+				getSettleDuration(moveTo - dismiss.fromX, velocity),
+				getSettleInterpolator(moveTo - dismiss.fromX, velocity));
+	}
+
+	/**
+	 * Slides dismissed rows out and collapses them with one animator, then
+	 * hands them to the next commit
+	 * 
+	 * @param dismisses
+	 *            Rows, with their views
+	 * @param moveTo
+	 *            where the rows slide to
+	 * @param slideDuration
+	 *            how long the slide takes, the collapse takes animationTime
 	 */
-	private void performDismiss(final View dismissView,
-			final int dismissPosition) {
-		final ViewGroup.LayoutParams lp = dismissView.getLayoutParams();
-		final int originalHeight = dismissView.getHeight();
+	private void startDismiss(final PendingDismissData[] dismisses,
+			final float moveTo, final float slideDuration,
+			final Interpolator slideInterpolator) {
+		final float duration = slideDuration + animationTime;
+		for (PendingDismissData dismiss : dismisses) {
+			animate(dismiss.view).cancel();
+			layers.acquire(dismiss.view);
+			dismiss.layered = true;
+			dismissingRows.add(dismiss);
+			dismissPositions.set(dismiss.position, true);
+		}
 
-		ValueAnimator animator = ValueAnimator.ofInt(originalHeight, 1)
-				.setDuration(animationTime);
+		ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f).setDuration(
+				(long) duration);
+		animator.setInterpolator(LINEAR_INTERPOLATOR);
+		animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+			private boolean collapsing;
 
-		animator.addListener(new AnimatorListenerAdapter() {
 			@Override
-			public void onAnimationEnd(Animator animation) {
-				--dismissAnimationRefCount;
-				if (dismissAnimationRefCount == 0) {
-					// No active animations, process all pending dismisses.
-					// Sort by descending position
-					Collections.sort(pendingDismisses);
-
-					int[] dismissPositions = new int[pendingDismisses.size()];
-					for (int i = pendingDismisses.size() - 1; i >= 0; i--) {
-						dismissPositions[i] = pendingDismisses.get(i).position;
-					}
-					swipeListView.onDismiss(dismissPositions);
-
-					ViewGroup.LayoutParams lp;
-					for (PendingDismissData pendingDismiss : pendingDismisses) {
-						// Reset view presentation
-						setAlpha(pendingDismiss.view, 1f);
-						setTranslationX(pendingDismiss.view, 0);
-						lp = pendingDismiss.view.getLayoutParams();
-						lp.height = originalHeight;
-						pendingDismiss.view.setLayoutParams(lp);
+			public void onAnimationUpdate(ValueAnimator valueAnimator) {
+				float time = valueAnimator.getAnimatedFraction() * duration;
+				float slide = 1f;
+				float collapse = 0f;
+				if (time < slideDuration) {
+					slide = slideInterpolator.getInterpolation(time
+							/ slideDuration);
+				} else {
+					if (!collapsing) {
+						collapsing = true;
+						closeOpenedItems();
+						for (PendingDismissData dismiss : dismisses) {
+							dismiss.collapsing = true;
+							// the row is invisible from now on
+							if (dismiss.layered) {
+								layers.release(dismiss.view);
+								dismiss.layered = false;
+							}
+						}
 					}
-
-					pendingDismisses.clear();
+					collapse = SETTLE_INTERPOLATOR.getInterpolation(Math.min(
+							1f, (time - slideDuration) / animationTime));
+				}
+				for (PendingDismissData dismiss : dismisses) {
+					updateDismiss(dismiss, moveTo, slide, collapse);
 				}
 			}
 		});
-
-		animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+		animator.addListener(new AnimatorListenerAdapter() {
 			@Override
-			public void onAnimationUpdate(ValueAnimator valueAnimator) {
-				lp.height = (Integer) valueAnimator.getAnimatedValue();
-				dismissView.setLayoutParams(lp);
+			public void onAnimationEnd(Animator animation) {
+				for (PendingDismissData dismiss : dismisses) {
+					dismissingRows.remove(dismiss);
+					addPendingDismiss(dismiss);
+				}
 			}
 		});
-
-		pendingDismisses.add(new PendingDismissData(dismissPosition,
-				dismissView));
 		animator.start();
 	}
 
+	/**
+	 * Shows a frame of the dismiss animation on the view of a row
+	 * 
+	 * @param slide
+	 *            how far the row slid out, from 0 to 1
+	 * @param collapse
+	 *            how far the row collapsed, from 0 to 1
+	 */
+	private void updateDismiss(PendingDismissData dismiss, float moveTo,
+			float slide, float collapse) {
+		View view = bindDismissView(dismiss);
+		if (view == null) {
+			return;
+		}
+		setTranslationX(view, dismiss.fromX + (moveTo - dismiss.fromX) * slide);
+		setAlpha(view, dismiss.fromAlpha * (1f - slide));
+		int collapsed = (int) ((dismiss.originalHeight - 1) * collapse);
+		if (collapsed > 0) {
+			if (dismissCollapseMode == StickyHeadersSwipeToDismissListView.DISMISS_COLLAPSE_OFFSET) {
+				swipeListView.setRowCollapse(view, collapsed);
+			} else {
+				ViewGroup.LayoutParams lp = view.getLayoutParams();
+				lp.height = dismiss.originalHeight - collapsed;
+				view.setLayoutParams(lp);
+				dismiss.resized = true;
+			}
+		}
+	}
+
+	/**
+	 * Hands a dismissed row to the commit of the next frame
+	 */
+	private void addPendingDismiss(PendingDismissData dismiss) {
+		pendingDismisses.add(dismiss);
+		if (!dismissCommitPosted) {
+			dismissCommitPosted = true;
+			ViewCompat.postOnAnimation(swipeListView, dismissCommit);
+		}
+	}
+
+	/**
+	 * @return the row view which has the position of a dismissed row, null
+	 *         if it is not visible. The presentation of the row is taken off
+	 *         a view the list rebound to another position.
+	 */
+	private View bindDismissView(PendingDismissData dismiss) {
+		if (swipeListView.isLayoutRequested()) {
+			// the children do not match the positions until the layout
+			return dismiss.view;
+		}
+		int index = dismiss.position - swipeListView.getFirstVisiblePosition();
+		View view = index >= 0 && index < swipeListView.getChildCount() ? swipeListView
+				.getChildAt(index) : null;
+		if (view != dismiss.view) {
+			if (dismiss.view != null) {
+				resetDismissView(dismiss);
+			}
+			dismiss.view = view;
+			if (view != null && !dismiss.collapsing) {
+				layers.acquire(view);
+				dismiss.layered = true;
+			}
+		}
+		return view;
+	}
+
+	/**
+	 * Resets the presentation of the view of a dismissed row
+	 */
+	private void resetDismissView(PendingDismissData dismiss) {
+		View view = dismiss.view;
+		if (dismiss.layered) {
+			layers.release(view);
+			dismiss.layered = false;
+		}
+		setAlpha(view, 1f);
+		setTranslationX(view, 0);
+		swipeListView.clearRowCollapse(view);
+		if (dismiss.resized) {
+			ViewGroup.LayoutParams lp = view.getLayoutParams();
+			lp.height = dismiss.originalLayoutHeight;
+			view.setLayoutParams(lp);
+			dismiss.resized = false;
+		}
+	}
+
+	/**
+	 * Commits the removal of the rows whose animation ended since the last
+	 * commit with one onDismiss
+	 */
+	private void commitDismisses() {
+		dismissCommitPosted = false;
+		if (pendingDismisses.isEmpty()) {
+			return;
+		}
+		// Sort by descending position
+		Collections.sort(pendingDismisses);
+		int[] removedPositions = new int[pendingDismisses.size()];
+		for (int i = pendingDismisses.size() - 1; i >= 0; i--) {
+			removedPositions[i] = pendingDismisses.get(i).position;
+		}
+		swipeListView.onDismiss(removedPositions);
+
+		for (PendingDismissData pendingDismiss : pendingDismisses) {
+			if (pendingDismiss.view != null) {
+				resetDismissView(pendingDismiss);
+			}
+		}
+		pendingDismisses.clear();
+		shiftDismissPositions(removedPositions);
+	}
+
+	/**
+	 * Moves the rows still dismissed up by the items removed before them,
+	 * every item takes two rows, its header or divider and itself
+	 * 
+	 * @param removedPositions
+	 *            Positions just passed to onDismiss, in descending order
+	 */
+	private void shiftDismissPositions(int[] removedPositions) {
+		shiftDismissPositions(dismissingRows, removedPositions);
+		shiftDismissPositions(pendingDismisses, removedPositions);
+		swipeListView.shiftDismissSnapshots(removedPositions);
+		dismissPositions.clear();
+		for (PendingDismissData dismissing : dismissingRows) {
+			dismissPositions.set(dismissing.position, true);
+		}
+		for (PendingDismissData pendingDismiss : pendingDismisses) {
+			dismissPositions.set(pendingDismiss.position, true);
+		}
+	}
+
+	/**
+	 * Shifts the rows in one pass over both, from the lowest position
+	 */
+	private static void shiftDismissPositions(List<PendingDismissData> rows,
+			int[] removedPositions) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		// Sort by descending position
+		Collections.sort(rows);
+		int removed = 0;
+		int next = removedPositions.length - 1;
+		for (int i = rows.size() - 1; i >= 0; i--) {
+			PendingDismissData dismissing = rows.get(i);
+			while (next >= 0 && removedPositions[next] < dismissing.position) {
+				removed++;
+				next--;
+			}
+			dismissing.position -= 2 * removed;
+		}
+	}
+
 }
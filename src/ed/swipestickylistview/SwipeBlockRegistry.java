@@ -0,0 +1,106 @@
+package ed.swipestickylistview;
+
+import android.widget.ListAdapter;
+
+/**
+ * Swipe directions blocked on the items of the wrapped adapter, kept in
+ * adapter positions. Backed by one bitset per direction, or by the stable ids
+ * of the items when requested and the adapter has them.
+ */
+final class SwipeBlockRegistry {
+
+	static final int LEFT = 1;
+	static final int RIGHT = 2;
+
+	private final boolean useStableIds;
+	private ListAdapter adapter;
+	private boolean keyedByIds;
+	private final PositionBitSet blockedLeft = new PositionBitSet();
+	private final PositionBitSet blockedRight = new PositionBitSet();
+	private final LongIntMap ids = new LongIntMap();
+
+	SwipeBlockRegistry(boolean useStableIds) {
+		this.useStableIds = useStableIds;
+	}
+
+	/**
+	 * Binds the registry to the wrapped adapter and forgets all blocks
+	 */
+	void setAdapter(ListAdapter adapter) {
+		this.adapter = adapter;
+		keyedByIds = useStableIds && adapter != null && adapter.hasStableIds();
+		clear();
+	}
+
+	/**
+	 * @return the blocked directions of an item, LEFT and RIGHT combined
+	 */
+	int getBlocked(int position) {
+		if (keyedByIds) {
+			if (ids.size() == 0 || position < 0
+					|| position >= adapter.getCount()) {
+				return 0;
+			}
+			return ids.get(adapter.getItemId(position), 0);
+		}
+		return (blockedLeft.get(position) ? LEFT : 0)
+				| (blockedRight.get(position) ? RIGHT : 0);
+	}
+
+	/**
+	 * Blocks or unblocks {@code directions} on every item in
+	 * {@code [from, to)}
+	 */
+	void setBlocked(int from, int to, int directions, boolean blocked) {
+		if (keyedByIds) {
+			to = Math.min(to, adapter.getCount());
+			for (int i = Math.max(from, 0); i < to; i++) {
+				long id = adapter.getItemId(i);
+				int value = ids.get(id, 0);
+				value = blocked ? value | directions : value & ~directions;
+				if (value != 0) {
+					ids.put(id, value);
+				} else {
+					ids.remove(id);
+				}
+			}
+			return;
+		}
+		if ((directions & LEFT) != 0) {
+			blockedLeft.set(from, to, blocked);
+		}
+		if ((directions & RIGHT) != 0) {
+			blockedRight.set(from, to, blocked);
+		}
+	}
+
+	void clear() {
+		blockedLeft.clear();
+		blockedRight.clear();
+		ids.clear();
+	}
+
+	void onItemRangeInserted(int positionStart, int itemCount) {
+		if (!keyedByIds) {
+			blockedLeft.insert(positionStart, itemCount);
+			blockedRight.insert(positionStart, itemCount);
+		}
+	}
+
+	void onItemRangeRemoved(int positionStart, int itemCount) {
+		if (!keyedByIds) {
+			blockedLeft.remove(positionStart, itemCount);
+			blockedRight.remove(positionStart, itemCount);
+		}
+	}
+
+	void onItemMoved(int fromPosition, int toPosition) {
+		if (!keyedByIds) {
+			int blocked = getBlocked(fromPosition);
+			onItemRangeRemoved(fromPosition, 1);
+			onItemRangeInserted(toPosition, 1);
+			setBlocked(toPosition, toPosition + 1, blocked, true);
+		}
+	}
+
+}
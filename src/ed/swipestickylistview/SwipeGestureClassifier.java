@@ -0,0 +1,471 @@
+package ed.swipestickylistview;
+
+/**
+ * Decides what a touch gesture on a row of the
+ * StickyHeadersSwipeToDismissListView does: when a swipe starts, which action
+ * it performs, how far the row follows the finger and whether the row opens,
+ * closes or is dismissed when the finger goes up. It only works on primitive
+ * values and does not use any Android class, so it can be driven on a plain
+ * JVM. No method allocates.
+ * <p>
+ * Feed a gesture with {@link #down}, {@link #move} and {@link #up}. The
+ * intents of every event are returned as INTENT_ flags, the details are read
+ * from the getters afterwards. The swipe modes, actions and directions use
+ * the values of the constants of StickyHeadersSwipeToDismissListView.
+ */
+public final class SwipeGestureClassifier {
+
+	public static final int SWIPE_MODE_NONE = 0;
+	public static final int SWIPE_MODE_BOTH = 1;
+	public static final int SWIPE_MODE_RIGHT = 2;
+	public static final int SWIPE_MODE_LEFT = 3;
+
+	public static final int SWIPE_ACTION_REVEAL = 0;
+	public static final int SWIPE_ACTION_DISMISS = 1;
+	public static final int SWIPE_ACTION_CHECK = 2;
+	public static final int SWIPE_ACTION_NONE = 3;
+
+	public static final int SWIPE_DIRECTION_LEFT = 1;
+	public static final int SWIPE_DIRECTION_RIGHT = 2;
+
+	/**
+	 * The row started following the finger
+	 */
+	public static final int INTENT_START = 1;
+	/**
+	 * An open row started closing, sent with INTENT_START
+	 */
+	public static final int INTENT_START_CLOSE = 1 << 1;
+	/**
+	 * A closed row with a back view started opening, sent with INTENT_START
+	 */
+	public static final int INTENT_START_OPEN = 1 << 2;
+	/**
+	 * The opening row changed its direction, see {@link #isSwipingRight()}
+	 */
+	public static final int INTENT_CHANGE_SWIPE = 1 << 3;
+	/**
+	 * The row follows the finger, see {@link #getTranslation()}
+	 */
+	public static final int INTENT_MOVE = 1 << 4;
+	/**
+	 * The finger went up after a swipe, see {@link #isSwap()} and
+	 * {@link #isSwapRight()}
+	 */
+	public static final int INTENT_SETTLE = 1 << 5;
+
+	private static final int SAMPLES = 16;
+	private static final long VELOCITY_HORIZON_MILLIS = 100;
+
+	// configuration
+	private float slop;
+	private float minFlingVelocity;
+	private float maxFlingVelocity;
+	private float viewWidth = 1;
+	private float leftOffset;
+	private float rightOffset;
+
+	// row and policy of the gesture
+	private boolean opened;
+	private boolean openedRight;
+	private boolean hasBackView;
+	private float rowOffset;
+	private int swipeMode = SWIPE_MODE_BOTH;
+	private int blockedDirections;
+	private int actionLeft = SWIPE_ACTION_REVEAL;
+	private int actionRight = SWIPE_ACTION_REVEAL;
+
+	// state of the gesture
+	private boolean tracking;
+	private int pointerId;
+	private float downX;
+	private float deltaX;
+	private boolean swiping;
+	private boolean opening;
+	private boolean swipingRight;
+	private int action = SWIPE_ACTION_NONE;
+	private boolean swap;
+	private boolean swapRight;
+
+	// velocity samples, a ring buffer
+	private final long[] sampleTimes = new long[SAMPLES];
+	private final float[] sampleXs = new float[SAMPLES];
+	private final float[] sampleYs = new float[SAMPLES];
+	private int sampleHead;
+	private int sampleCount;
+	private float velocityX;
+	private float velocityY;
+
+	/**
+	 * Sets the distance the finger has to move before a swipe starts
+	 */
+	public void setSlop(float slop) {
+		this.slop = slop;
+	}
+
+	/**
+	 * Sets the range of velocities, in pixels per second, which count as a
+	 * fling
+	 */
+	public void setFlingVelocities(float minFlingVelocity,
+			float maxFlingVelocity) {
+		this.minFlingVelocity = minFlingVelocity;
+		this.maxFlingVelocity = maxFlingVelocity;
+	}
+
+	/**
+	 * Sets the width of the rows and the part of them that stays visible
+	 * when they are open to the left or to the right
+	 */
+	public void setGeometry(float viewWidth, float leftOffset,
+			float rightOffset) {
+		this.viewWidth = viewWidth;
+		this.leftOffset = leftOffset;
+		this.rightOffset = rightOffset;
+	}
+
+	/**
+	 * Sets the state of the row the next gesture starts on, resting where
+	 * that state puts it
+	 */
+	public void setRow(boolean opened, boolean openedRight,
+			boolean hasBackView) {
+		this.opened = opened;
+		this.openedRight = openedRight;
+		this.hasBackView = hasBackView;
+		rowOffset = 0;
+	}
+
+	/**
+	 * Sets how far the row is from where its state puts it, for a row caught
+	 * by the next gesture while it was still settling. The row follows the
+	 * finger from there and settles even if it is not swiped.
+	 */
+	public void setRowOffset(float rowOffset) {
+		this.rowOffset = rowOffset;
+	}
+
+	/**
+	 * Sets the swipe mode, the blocked SWIPE_DIRECTION_ flags and the actions
+	 * of the next gesture
+	 */
+	public void setPolicy(int swipeMode, int blockedDirections,
+			int actionLeft, int actionRight) {
+		this.swipeMode = swipeMode;
+		this.blockedDirections = blockedDirections;
+		this.actionLeft = actionLeft;
+		this.actionRight = actionRight;
+	}
+
+	/**
+	 * Starts a gesture on the row set with {@link #setRow}
+	 */
+	public void down(long time, float x, float y, int pointerId) {
+		tracking = true;
+		this.pointerId = pointerId;
+		downX = x;
+		deltaX = 0;
+		swiping = false;
+		opening = false;
+		swipingRight = false;
+		action = SWIPE_ACTION_NONE;
+		swap = false;
+		swapRight = false;
+		sampleCount = 0;
+		addSample(time, x, y);
+	}
+
+	/**
+	 * Adds a position which is only used for the velocity, like the
+	 * historical positions batched into a move event
+	 */
+	public void addSample(long time, float x, float y) {
+		sampleTimes[sampleHead] = time;
+		sampleXs[sampleHead] = x;
+		sampleYs[sampleHead] = y;
+		sampleHead = (sampleHead + 1) % SAMPLES;
+		if (sampleCount < SAMPLES) {
+			sampleCount++;
+		}
+	}
+
+	/**
+	 * @return the INTENT_ flags of the move
+	 */
+	public int move(long time, float x, float y, int pointerId) {
+		if (!tracking || pointerId != this.pointerId) {
+			return 0;
+		}
+		addSample(time, x, y);
+		int intents = 0;
+		float fingerDeltaX = x - downX;
+		float deltaMode = Math.abs(fingerDeltaX);
+		// where the row is relative to its resting position
+		float deltaX = fingerDeltaX + rowOffset;
+
+		if (opening) {
+			if (blockedDirections != 0) {
+				if (isBlocked(deltaX)) {
+					deltaMode = 0;
+				}
+			} else if ((deltaX > 0) != swipingRight) {
+				swipingRight = deltaX > 0;
+				intents |= INTENT_CHANGE_SWIPE;
+			}
+		}
+
+		if (swipeMode == SWIPE_MODE_NONE) {
+			deltaMode = 0;
+		} else if (swipeMode != SWIPE_MODE_BOTH) {
+			// an open row may only be swiped back
+			boolean towardsMode = swipeMode == SWIPE_MODE_RIGHT ? deltaX > 0
+					: deltaX < 0;
+			boolean backwards = swipeMode == SWIPE_MODE_RIGHT ? deltaX < 0
+					: deltaX > 0;
+			if (opened ? towardsMode : backwards) {
+				deltaMode = 0;
+			}
+		} else if (blockedDirections != 0) {
+			// an open row may only be swiped back, a closed one not towards
+			// a blocked direction
+			if (opened ? (openedRight ? deltaX > 0 : deltaX < 0)
+					: isBlocked(deltaX)) {
+				deltaMode = 0;
+			}
+		}
+
+		if (!swiping && deltaMode > slop) {
+			computeVelocity();
+			if (Math.abs(velocityY) < Math.abs(velocityX)) {
+				intents |= start(deltaX > 0);
+			}
+		}
+
+		if (swiping) {
+			this.deltaX = fingerDeltaX;
+			intents |= INTENT_MOVE;
+		}
+		return intents;
+	}
+
+	private int start(boolean right) {
+		swiping = true;
+		swipingRight = right;
+		if (opened) {
+			action = SWIPE_ACTION_REVEAL;
+			return INTENT_START | INTENT_START_CLOSE;
+		}
+		int sideAction = right ? actionRight : actionLeft;
+		if (rowOffset != 0) {
+			// a caught row is half revealed already
+			action = SWIPE_ACTION_REVEAL;
+		} else if (sideAction == SWIPE_ACTION_DISMISS
+				|| sideAction == SWIPE_ACTION_CHECK) {
+			action = sideAction;
+		} else {
+			action = SWIPE_ACTION_REVEAL;
+		}
+		if (hasBackView) {
+			opening = true;
+			return INTENT_START | INTENT_START_OPEN;
+		}
+		return INTENT_START;
+	}
+
+	/**
+	 * Ends the gesture
+	 *
+	 * @return INTENT_SETTLE if the row was swiped or caught, 0 otherwise
+	 */
+	public int up(long time, float x, float y, int pointerId) {
+		if (!tracking) {
+			return 0;
+		}
+		tracking = false;
+		if (!swiping) {
+			if (rowOffset == 0) {
+				return 0;
+			}
+			// a caught row which was not swiped settles from where it is
+			action = SWIPE_ACTION_REVEAL;
+			velocityX = 0;
+			velocityY = 0;
+			swap = Math.abs(rowOffset) > viewWidth / 2;
+			swapRight = rowOffset > 0;
+			return INTENT_SETTLE;
+		}
+		if (pointerId == this.pointerId) {
+			addSample(time, x, y);
+			this.deltaX = x - downX;
+		}
+		float deltaX = this.deltaX + rowOffset;
+		computeVelocity();
+		float velocityX = Math.abs(this.velocityX);
+		if (!opened) {
+			if (swipeMode == SWIPE_MODE_LEFT && this.velocityX > 0) {
+				velocityX = 0;
+			}
+			if (swipeMode == SWIPE_MODE_RIGHT && this.velocityX < 0) {
+				velocityX = 0;
+			}
+		}
+		swap = false;
+		swapRight = false;
+		if (minFlingVelocity <= velocityX && velocityX <= maxFlingVelocity
+				&& Math.abs(velocityY) < velocityX) {
+			swapRight = this.velocityX > 0;
+			if (opened) {
+				// a fling only closes an open row towards where it came from
+				swap = openedRight != swapRight;
+			} else {
+				swap = swipingRight == swapRight;
+			}
+		} else if (Math.abs(deltaX) > viewWidth / 2) {
+			swap = true;
+			swapRight = deltaX > 0;
+		}
+		swiping = false;
+		return INTENT_SETTLE;
+	}
+
+	/**
+	 * Drops the gesture without settling the row
+	 */
+	public void cancel() {
+		tracking = false;
+		swiping = false;
+	}
+
+	/**
+	 * @return true from a down on a row until the gesture ends
+	 */
+	public boolean isTracking() {
+		return tracking;
+	}
+
+	/**
+	 * @return true while the row follows the finger
+	 */
+	public boolean isSwiping() {
+		return swiping;
+	}
+
+	/**
+	 * @return the SWIPE_ACTION_ of the current or last swipe
+	 */
+	public int getAction() {
+		return action;
+	}
+
+	/**
+	 * @return true if the swipe started or changed towards the right
+	 */
+	public boolean isSwipingRight() {
+		return swipingRight;
+	}
+
+	/**
+	 * @return the translation of the row for the last move
+	 */
+	public float getTranslation() {
+		return getTranslation(deltaX);
+	}
+
+	/**
+	 * @return the translation of the row for a finger moved by
+	 *         {@code deltaX} since touch down
+	 */
+	public float getTranslation(float deltaX) {
+		deltaX += rowOffset;
+		if (opening && isBlocked(deltaX)) {
+			deltaX = 0;
+		}
+		if (opened) {
+			deltaX += openedRight ? viewWidth - rightOffset : -viewWidth
+					+ leftOffset;
+		}
+		return deltaX;
+	}
+
+	/**
+	 * @return the x position of the finger at touch down
+	 */
+	public float getDownX() {
+		return downX;
+	}
+
+	/**
+	 * @return true if the row changes its state when it settles
+	 */
+	public boolean isSwap() {
+		return swap;
+	}
+
+	/**
+	 * @return true if the settling row moves to the right
+	 */
+	public boolean isSwapRight() {
+		return swapRight;
+	}
+
+	/**
+	 * @return the horizontal velocity in pixels per second as of the last
+	 *         decision that needed it, after {@link #up} the release
+	 *         velocity
+	 */
+	public float getVelocityX() {
+		return velocityX;
+	}
+
+	private boolean isBlocked(float deltaX) {
+		if (deltaX > 0) {
+			return (blockedDirections & SWIPE_DIRECTION_RIGHT) != 0;
+		}
+		if (deltaX < 0) {
+			return (blockedDirections & SWIPE_DIRECTION_LEFT) != 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Least squares fit of a line through the samples of the last 100ms
+	 */
+	private void computeVelocity() {
+		velocityX = 0;
+		velocityY = 0;
+		if (sampleCount < 2) {
+			return;
+		}
+		int newest = (sampleHead + SAMPLES - 1) % SAMPLES;
+		long newestTime = sampleTimes[newest];
+		double sumT = 0;
+		double sumX = 0;
+		double sumY = 0;
+		double sumTT = 0;
+		double sumTX = 0;
+		double sumTY = 0;
+		int n = 0;
+		for (int i = 0; i < sampleCount; i++) {
+			int index = (newest - i + SAMPLES) % SAMPLES;
+			long age = newestTime - sampleTimes[index];
+			if (age > VELOCITY_HORIZON_MILLIS) {
+				break;
+			}
+			double t = -age;
+			sumT += t;
+			sumX += sampleXs[index];
+			sumY += sampleYs[index];
+			sumTT += t * t;
+			sumTX += t * sampleXs[index];
+			sumTY += t * sampleYs[index];
+			n++;
+		}
+		double denominator = n * sumTT - sumT * sumT;
+		if (n < 2 || denominator == 0) {
+			return;
+		}
+		velocityX = (float) ((n * sumTX - sumT * sumX) / denominator * 1000);
+		velocityY = (float) ((n * sumTY - sumT * sumY) / denominator * 1000);
+	}
+
+}
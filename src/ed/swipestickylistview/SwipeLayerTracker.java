@@ -0,0 +1,88 @@
+package ed.swipestickylistview;
+
+import java.util.ArrayList;
+
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewParent;
+
+/**
+ * Puts the views the swipe gestures and their animations move on a hardware
+ * layer while they move, so changing their translation and alpha does not
+ * redraw them. A view can be acquired several times, by a gesture and by the
+ * animation it hands over to, and goes back to having no layer when it was
+ * released as often. Views which already have a layer and rows opted out
+ * with {@link StickyHeadersSwipeToDismissListView#setSwipeHardwareLayerEnabled}
+ * are left alone.
+ */
+final class SwipeLayerTracker {
+
+	private final View list;
+	private boolean enabled = true;
+	private final ArrayList<View> views = new ArrayList<View>();
+	private int[] counts = new int[4];
+
+	SwipeLayerTracker(View list) {
+		this.list = list;
+	}
+
+	/**
+	 * Sets if views are put on a layer, the views which have one keep it
+	 * until they are released
+	 */
+	void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	void acquire(View view) {
+		if (view == null) {
+			return;
+		}
+		int index = views.indexOf(view);
+		if (index >= 0) {
+			counts[index]++;
+			return;
+		}
+		if (!enabled
+				|| ViewCompat.getLayerType(view) != ViewCompat.LAYER_TYPE_NONE
+				|| isOptedOut(view)) {
+			return;
+		}
+		index = views.size();
+		if (index == counts.length) {
+			int[] grown = new int[index * 2];
+			System.arraycopy(counts, 0, grown, 0, index);
+			counts = grown;
+		}
+		views.add(view);
+		counts[index] = 1;
+		ViewCompat.setLayerType(view, ViewCompat.LAYER_TYPE_HARDWARE, null);
+	}
+
+	void release(View view) {
+		int index = view == null ? -1 : views.indexOf(view);
+		if (index < 0 || --counts[index] > 0) {
+			return;
+		}
+		int last = views.size() - 1;
+		views.set(index, views.get(last));
+		counts[index] = counts[last];
+		views.remove(last);
+		ViewCompat.setLayerType(view, ViewCompat.LAYER_TYPE_NONE, null);
+	}
+
+	/**
+	 * @return true if the view or the row it is in was opted out
+	 */
+	private boolean isOptedOut(View view) {
+		while (view != null && view != list) {
+			if (Boolean.FALSE.equals(view.getTag(R.id.swipeHardwareLayer))) {
+				return true;
+			}
+			ViewParent parent = view.getParent();
+			view = parent instanceof View ? (View) parent : null;
+		}
+		return false;
+	}
+
+}
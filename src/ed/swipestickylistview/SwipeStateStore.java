@@ -0,0 +1,124 @@
+package ed.swipestickylistview;
+
+/**
+ * Opened state of the rows of the StickyHeadersSwipeToDismissListView. Only
+ * rows that are open take up space. Rows are keyed by their item id when the
+ * adapter has stable ids, otherwise by their list position, in which case
+ * the keys are moved along when rows are inserted or removed.
+ */
+final class SwipeStateStore {
+
+	private static final int OPENED = 1;
+	private static final int OPENED_RIGHT = 2;
+
+	private LongIntMap states = new LongIntMap();
+	private LongIntMap scratch = new LongIntMap();
+	private boolean keyedByIds;
+
+	boolean isKeyedByIds() {
+		return keyedByIds;
+	}
+
+	/**
+	 * Switches between item ids and list positions as keys, forgetting all
+	 * states if the kind of key changes
+	 */
+	void setKeyedByIds(boolean keyedByIds) {
+		if (this.keyedByIds != keyedByIds) {
+			this.keyedByIds = keyedByIds;
+			states.clear();
+		}
+	}
+
+	boolean isOpened(long key) {
+		return (states.get(key, 0) & OPENED) != 0;
+	}
+
+	boolean isOpenedRight(long key) {
+		return (states.get(key, 0) & OPENED_RIGHT) != 0;
+	}
+
+	void setOpened(long key, boolean opened, boolean right) {
+		if (opened) {
+			states.put(key, OPENED | (right ? OPENED_RIGHT : 0));
+		} else {
+			states.remove(key);
+		}
+	}
+
+	void clear() {
+		states.clear();
+	}
+
+	/**
+	 * Moves the states of the rows at and after {@code position} down by
+	 * {@code count}
+	 */
+	void onRowRangeInserted(int position, int count) {
+		if (!keyedByIds) {
+			moveKeys(position, Long.MAX_VALUE, count);
+		}
+	}
+
+	/**
+	 * Drops the states of the rows in {@code [position, position + count)}
+	 * and moves the states of the rows after them up
+	 */
+	void onRowRangeRemoved(int position, int count) {
+		if (!keyedByIds) {
+			moveKeys(position, position + count, 0);
+			moveKeys(position + count, Long.MAX_VALUE, -count);
+		}
+	}
+
+	/**
+	 * Moves the states of {@code count} rows at {@code from} so they start at
+	 * {@code to} after the move
+	 */
+	void onRowRangeMoved(int from, int to, int count) {
+		if (keyedByIds || from == to) {
+			return;
+		}
+		scratch.clear();
+		for (int slot = states.nextSlot(0); slot >= 0; slot = states
+				.nextSlot(slot + 1)) {
+			long key = states.keyAt(slot);
+			if (key >= from && key < from + count) {
+				key += to - from;
+			} else if (from < to && key >= from + count && key < to + count) {
+				key -= count;
+			} else if (to < from && key >= to && key < from) {
+				key += count;
+			}
+			scratch.put(key, states.valueAt(slot));
+		}
+		swap();
+	}
+
+	/**
+	 * Moves every key in {@code [from, to)} by {@code delta}, a delta of 0
+	 * drops the keys
+	 */
+	private void moveKeys(long from, long to, int delta) {
+		scratch.clear();
+		for (int slot = states.nextSlot(0); slot >= 0; slot = states
+				.nextSlot(slot + 1)) {
+			long key = states.keyAt(slot);
+			if (key >= from && key < to) {
+				if (delta == 0) {
+					continue;
+				}
+				key += delta;
+			}
+			scratch.put(key, states.valueAt(slot));
+		}
+		swap();
+	}
+
+	private void swap() {
+		LongIntMap states = this.states;
+		this.states = scratch;
+		scratch = states;
+	}
+
+}
@@ -0,0 +1,136 @@
+package ed.swipestickylistview;
+
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+
+/**
+ * Decides when the rows of a scrolling StickyHeadersSwipeToDismissListView may
+ * be swiped. Swipes are held back while the list is dragged and while it
+ * flings faster than the resume velocity, which is measured from the
+ * positions of the rows on every scroll. A touch catching a fling slow enough
+ * to swipe keeps swiping open for its gesture. Once the list is idle swiping
+ * opens again, after the resume delay if one is set.
+ * <p>
+ * The gate is fed by the scroll listener of the list and posts itself for
+ * the resume delay, so no state change allocates.
+ */
+final class SwipeTouchGate implements Runnable {
+
+	/**
+	 * Weight of the newest measurement in the smoothed velocity
+	 */
+	private static final float VELOCITY_SMOOTHING = 0.5f;
+
+	private final AbsListView list;
+	private float resumeVelocity;
+	private long resumeDelay;
+
+	private int scrollState = OnScrollListener.SCROLL_STATE_IDLE;
+	private boolean open = true;
+
+	// a row visible on the last scroll, to measure how far the list moved
+	private int lastPosition = AbsListView.INVALID_POSITION;
+	private int lastTop;
+	private long lastTime;
+	private float velocity;
+
+	SwipeTouchGate(AbsListView list) {
+		this.list = list;
+	}
+
+	/**
+	 * Sets the scroll velocity, in pixels per second, below which a fling no
+	 * longer holds back swipes. 0 holds them back until the list is idle.
+	 */
+	void setResumeVelocity(float resumeVelocity) {
+		this.resumeVelocity = resumeVelocity;
+	}
+
+	/**
+	 * Sets how long swipes stay held back after the list became idle
+	 */
+	void setResumeDelay(long resumeDelay) {
+		this.resumeDelay = Math.max(0, resumeDelay);
+	}
+
+	/**
+	 * @return true if a row may be swiped
+	 */
+	boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * @return the smoothed scroll velocity in pixels per second
+	 */
+	float getVelocity() {
+		return velocity;
+	}
+
+	void onScrollStateChanged(int newState) {
+		int oldState = scrollState;
+		scrollState = newState;
+		list.removeCallbacks(this);
+		switch (newState) {
+		case OnScrollListener.SCROLL_STATE_TOUCH_SCROLL:
+			// a drag may not swipe, a touch catching a slow fling may
+			if (oldState != OnScrollListener.SCROLL_STATE_FLING || !open) {
+				open = false;
+			}
+			break;
+		case OnScrollListener.SCROLL_STATE_FLING:
+			open = velocity < resumeVelocity;
+			break;
+		default:
+			lastPosition = AbsListView.INVALID_POSITION;
+			velocity = 0;
+			if (open || resumeDelay == 0) {
+				open = true;
+			} else {
+				list.postDelayed(this, resumeDelay);
+			}
+			break;
+		}
+	}
+
+	void onScroll(int firstVisibleItem) {
+		if (scrollState == OnScrollListener.SCROLL_STATE_IDLE
+				|| list.getChildCount() == 0) {
+			return;
+		}
+		long time = SystemClock.uptimeMillis();
+		if (lastPosition != AbsListView.INVALID_POSITION) {
+			int index = lastPosition - firstVisibleItem;
+			if (index < 0 || index >= list.getChildCount()) {
+				// moved by more than a screen since the last scroll
+				velocity = Float.MAX_VALUE;
+			} else if (time > lastTime) {
+				View child = list.getChildAt(index);
+				float measured = Math.abs(child.getTop() - lastTop) * 1000f
+						/ (time - lastTime);
+				velocity = velocity == Float.MAX_VALUE ? measured : velocity
+						+ (measured - velocity) * VELOCITY_SMOOTHING;
+			} else {
+				// several scrolls within a millisecond, measure them together
+				return;
+			}
+		}
+		lastPosition = firstVisibleItem;
+		lastTop = list.getChildAt(0).getTop();
+		lastTime = time;
+		if (scrollState == OnScrollListener.SCROLL_STATE_FLING && !open
+				&& velocity < resumeVelocity) {
+			open = true;
+		}
+	}
+
+	@Override
+	public void run() {
+		if (scrollState == OnScrollListener.SCROLL_STATE_IDLE) {
+			open = true;
+		}
+	}
+
+}